@@ -0,0 +1,97 @@
+package vvs_benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares a JMH result (CSV, as written by the default jmh.args) with the
+ * committed baseline, printing the change of every score they share:
+ * throughput (higher is better) and, with the gc profiler, the bytes
+ * allocated per operation (lower is better).
+ *
+ * System properties:
+ *   bench.baseline  the baseline result (default src/benchmark/baseline/jmh-result.csv)
+ *   bench.current   the result to compare (default target/jmh-result.csv)
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:java -Dbenchmark.main=vvs_benchmark.CompareBaseline
+ */
+public class CompareBaseline {
+
+	/**
+	 * The secondary scores worth comparing, besides the benchmark's own
+	 */
+	private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+	public static void main(String[] args) throws IOException {
+		Map<String, Score> baseline = read(System.getProperty("bench.baseline", "src/benchmark/baseline/jmh-result.csv"));
+		Map<String, Score> current = read(System.getProperty("bench.current", "target/jmh-result.csv"));
+
+		System.out.printf("%14s %14s %9s %-6s %s%n", "baseline", "current", "change", "unit", "benchmark");
+		for (Map.Entry<String, Score> entry : current.entrySet()) {
+			Score before = baseline.get(entry.getKey());
+			Score after = entry.getValue();
+			if (before == null)
+				System.out.printf("%14s %14.1f %9s %-6s %s%n", "-", after.value, "new", after.unit, entry.getKey());
+			else
+				System.out.printf("%14.1f %14.1f %+8.1f%% %-6s %s%n", before.value, after.value,
+						(after.value - before.value) * 100 / before.value, after.unit, entry.getKey());
+		}
+	}
+
+	private static Map<String, Score> read(String file) throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+		List<String> header = fields(lines.get(0));
+		int benchmark = header.indexOf("Benchmark");
+		int score = header.indexOf("Score");
+		int unit = header.indexOf("Unit");
+		Map<String, Score> scores = new LinkedHashMap<>();
+		for (String line : lines.subList(1, lines.size())) {
+			List<String> row = fields(line);
+			String name = row.get(benchmark);
+			if (name.contains(":") && !name.endsWith(ALLOCATION))
+				continue;
+			// drops the package from the benchmark name
+			StringBuilder key = new StringBuilder(name.substring(name.indexOf('.') + 1));
+			for (int i = unit + 1; i < header.size(); i++)
+				key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(row.get(i));
+			scores.put(key.toString(), new Score(Double.parseDouble(row.get(score)), row.get(unit)));
+		}
+		return scores;
+	}
+
+	/**
+	 * @return The fields of a CSV line, unquoted
+	 */
+	private static List<String> fields(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (char c : line.toCharArray()) {
+			if (c == '"')
+				quoted = !quoted;
+			else if (c == ',' && !quoted) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else
+				field.append(c);
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private static class Score {
+		final double value;
+		final String unit;
+
+		Score(double value, String unit) {
+			this.value = value;
+			this.unit = unit;
+		}
+	}
+}
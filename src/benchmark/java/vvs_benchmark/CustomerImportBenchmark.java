@@ -0,0 +1,70 @@
+package vvs_benchmark;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import webapp.CreateDatabase;
+import webapp.persistence.DataSource;
+import webapp.services.CustomerImportDTO;
+import webapp.services.CustomerService;
+
+/**
+ * Compares the throughput of adding customers one at a time
+ * (CustomerService.addCustomer) with the bulk import
+ * (CustomerService.importCustomers), on a file database configured like
+ * the application's.
+ *
+ * System properties:
+ *   bench.rows        customers imported in bulk (default 200000)
+ *   bench.singleRows  customers added one at a time (default 20000)
+ *   bench.batchSize   import batch size (default 1000)
+ *   bench.syncCommits whether every commit is synced to disk (default false,
+ *                     like the application database's 500ms write delay)
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:java -Dbenchmark.main=vvs_benchmark.CustomerImportBenchmark
+ */
+public class CustomerImportBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int rows = Integer.getInteger("bench.rows", 200000);
+		int singleRows = Integer.getInteger("bench.singleRows", 20000);
+		int batchSize = Integer.getInteger("bench.batchSize", 1000);
+		boolean syncCommits = Boolean.getBoolean("bench.syncCommits");
+
+		File dir = Files.createTempDirectory("customer-import").toFile();
+		String url = "jdbc:hsqldb:file:" + dir.getAbsolutePath() + "/bench"
+				+ (syncCommits ? ";hsqldb.write_delay=false" : "");
+		try (Connection connection = DriverManager.getConnection(url, "SA", "")) {
+			CreateDatabase.runScript(connection, "src/main/resources/createDDLHSQLDB.sql");
+			CreateDatabase.migrate(connection);
+			DataSource.INSTANCE.connect(url, "SA", "");
+
+			VatNumbers vats = new VatNumbers(500000000);
+			long start = System.nanoTime();
+			for (int i = 0; i < singleRows; i++)
+				CustomerService.INSTANCE.addCustomer(vats.next(), "CUSTOMER " + i, 210000000 + i);
+			double single = singleRows / ((System.nanoTime() - start) / 1e9);
+
+			StringBuilder csv = new StringBuilder("vat,designation,phone\n");
+			for (int i = 0; i < rows; i++)
+				csv.append(vats.next()).append(",CUSTOMER ").append(i).append(',').append(910000000 + i).append('\n');
+			start = System.nanoTime();
+			CustomerImportDTO report = CustomerService.INSTANCE.importCustomers(new StringReader(csv.toString()), batchSize);
+			double bulk = report.imported / ((System.nanoTime() - start) / 1e9);
+
+			System.out.printf("one at a time: %10.0f customers/s (%d customers)%n", single, singleRows);
+			System.out.printf("bulk import:   %10.0f customers/s (%d customers, %d rejected, batch %d)%n",
+					bulk, report.imported, report.rejections.size(), batchSize);
+			System.out.printf("speed up:      %10.1fx%n", bulk / single);
+
+			DataSource.INSTANCE.close();
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("SHUTDOWN");
+			}
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package vvs_benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import webapp.CreateDatabase;
+import webapp.persistence.AddressRowDataGateway;
+import webapp.persistence.CustomerCache;
+import webapp.persistence.CustomerFinder;
+import webapp.persistence.CustomerRowDataGateway;
+import webapp.persistence.CustomerSalesCache;
+import webapp.persistence.DataSource;
+import webapp.persistence.PersistenceException;
+import webapp.persistence.SaleRowDataGateway;
+
+/**
+ * JMH throughput benchmarks of the persistence gateways, on an in-memory
+ * database filled with a synthetic dataset: the lookups by customer VAT
+ * and the inserts. Run with the gc profiler (the default jmh.args) to also
+ * get the allocation rate per operation.
+ *
+ * The rows inserted by the insert benchmarks are removed after each
+ * iteration, so every iteration starts from the same dataset. The
+ * benchmarks are meant to run with a single thread. The customer and
+ * customer sales caches are disabled, so the lookups are measured in the
+ * database.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec@jmh
+ * Compare with the committed baseline: mvn -Pbenchmark exec:java -Dbenchmark.main=vvs_benchmark.CompareBaseline
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GatewayBenchmark {
+
+	private static final String URL = "jdbc:hsqldb:mem:gatewaybenchmark";
+	private static final int BATCH_SIZE = 10000;
+
+	@Param({"1000", "100000"})
+	public int customers;
+
+	@Param("10")
+	public int salesPerCustomer;
+
+	@Param("2")
+	public int addressesPerCustomer;
+
+	/**
+	 * Keeps the in-memory database alive while the benchmark runs
+	 */
+	private Connection connection;
+
+	/**
+	 * The VAT numbers of the customers of the dataset
+	 */
+	private int[] vats;
+
+	/**
+	 * The VAT numbers of the customers inserted by insertCustomer
+	 */
+	private VatNumbers newVats;
+
+	private int lastCustomerId;
+	private int lastSaleId;
+	private int lastAddressId;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		connection = DriverManager.getConnection(URL, "SA", "");
+		CreateDatabase.runScript(connection, "src/main/resources/createDDLHSQLDB.sql");
+		CreateDatabase.migrate(connection);
+
+		VatNumbers generator = new VatNumbers(500000000);
+		vats = new int[customers];
+		for (int i = 0; i < customers; i++)
+			vats[i] = generator.next();
+		newVats = generator;
+
+		connection.setAutoCommit(false);
+		fill("insert into customer (designation, phonenumber, vatnumber) values ('CUSTOMER', 910000000, ?)", 1);
+		fill("insert into sale (date, total, status, customer_vat) values (CURRENT_DATE, 0.0, 'O', ?)", salesPerCustomer);
+		fill("insert into address (address, customer_vat) values ('Campo Grande, Lisboa', ?)", addressesPerCustomer);
+		connection.setAutoCommit(true);
+
+		lastCustomerId = maxId("customer");
+		lastSaleId = maxId("sale");
+		lastAddressId = maxId("address");
+		DataSource.INSTANCE.connect(URL, "SA", "");
+		// measure the lookups in the database, as the baseline does, not cache hits
+		CustomerCache.INSTANCE.configure(0, 0);
+		CustomerSalesCache.INSTANCE.configure(0, 0);
+	}
+
+	private void fill(String sql, int rowsPerCustomer) throws Exception {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			int rows = 0;
+			for (int vat : vats)
+				for (int i = 0; i < rowsPerCustomer; i++) {
+					statement.setInt(1, vat);
+					statement.addBatch();
+					if (++rows % BATCH_SIZE == 0)
+						statement.executeBatch();
+				}
+			if (rows % BATCH_SIZE != 0)
+				statement.executeBatch();
+			connection.commit();
+		}
+	}
+
+	private int maxId(String table) throws Exception {
+		try (Statement statement = connection.createStatement();
+			 ResultSet rs = statement.executeQuery("select coalesce(max(id), 0) from " + table)) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void removeInsertedRows() throws Exception {
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("delete from customer where id > " + lastCustomerId);
+			statement.executeUpdate("delete from sale where id > " + lastSaleId);
+			statement.executeUpdate("delete from address where id > " + lastAddressId);
+		}
+		// the rows were deleted behind the gateways' back
+		CustomerCache.INSTANCE.clear();
+		CustomerSalesCache.INSTANCE.clear();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		DataSource.INSTANCE.close();
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("SHUTDOWN");
+		}
+		connection.close();
+	}
+
+	private int randomVat() {
+		return vats[ThreadLocalRandom.current().nextInt(vats.length)];
+	}
+
+
+	// lookups
+
+	@Benchmark
+	public CustomerRowDataGateway getCustomerByVATNumber() throws PersistenceException {
+		return new CustomerFinder().getCustomerByVATNumber(randomVat());
+	}
+
+	@Benchmark
+	public List<SaleRowDataGateway> getAllSalesOfCustomer() throws PersistenceException {
+		return new SaleRowDataGateway().getAllSales(randomVat());
+	}
+
+	@Benchmark
+	public List<AddressRowDataGateway> getCustomerAddresses() throws PersistenceException {
+		return new AddressRowDataGateway().getCustomerAddresses(randomVat());
+	}
+
+
+	// inserts
+
+	@Benchmark
+	public void insertCustomer() throws PersistenceException {
+		new CustomerRowDataGateway(newVats.next(), "BENCHMARK CUSTOMER", 910000000).insert();
+	}
+
+	@Benchmark
+	public void insertSale() throws PersistenceException {
+		new SaleRowDataGateway(randomVat(), new Date()).insert();
+	}
+
+	@Benchmark
+	public void insertAddress() throws PersistenceException {
+		new AddressRowDataGateway("Campo Grande, Lisboa", randomVat()).insert();
+	}
+}
@@ -0,0 +1,122 @@
+package vvs_benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import webapp.CreateDatabase;
+import webapp.persistence.ConnectionPoolConfig;
+import webapp.persistence.DataSource;
+import webapp.services.CustomerService;
+import webapp.webpresentation.RequestExecutor;
+import webapp.webpresentation.RequestExecutor.Mode;
+
+/**
+ * Compares how many concurrent requests the request executor sustains on a
+ * thread pool sized to the connection pool (POOL) and on virtual threads
+ * (VIRTUAL), with the same bound on the requests admitted.
+ *
+ * Each simulated request looks up a customer (holding a database connection
+ * for the query only) and then spends bench.clientMillis writing its
+ * response to a slow client, which in POOL mode keeps one of the few threads
+ * busy while in VIRTUAL mode it only parks its virtual thread. The requests
+ * arrive in bursts of bench.burst, so requests that find no room are
+ * rejected, and requests that time out waiting for a database connection
+ * are unavailable (both would be answered 503).
+ *
+ * VIRTUAL needs Java 21 or later; on older JVMs it falls back to POOL and
+ * both lines of the report measure the same thing.
+ *
+ * System properties:
+ *   bench.requests     requests sent in each mode (default 5000)
+ *   bench.burst        requests sent at once (default 500)
+ *   bench.clientMillis time spent writing each response (default 20)
+ *   bench.customers    customers in the database (default 1000)
+ *   webapp.db.pool.maxSize connections (and POOL threads) (default 10)
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:java -Dbenchmark.main=vvs_benchmark.RequestExecutorBenchmark
+ */
+public class RequestExecutorBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int requests = Integer.getInteger("bench.requests", 5000);
+		int burst = Integer.getInteger("bench.burst", 500);
+		long clientMillis = Long.getLong("bench.clientMillis", 20);
+		int customers = Integer.getInteger("bench.customers", 1000);
+		ConnectionPoolConfig config = ConnectionPoolConfig.fromSystemProperties();
+		int admitted = config.maxSize + RequestExecutor.DEFAULT_QUEUE_SIZE;
+
+		File dir = Files.createTempDirectory("request-executor").toFile();
+		String url = "jdbc:hsqldb:file:" + dir.getAbsolutePath() + "/bench";
+		try (Connection connection = DriverManager.getConnection(url, "SA", "")) {
+			CreateDatabase.runScript(connection, "src/main/resources/createDDLHSQLDB.sql");
+			CreateDatabase.migrate(connection);
+			DataSource.INSTANCE.connect(url, "SA", "", config);
+
+			VatNumbers vats = new VatNumbers(500000000);
+			int[] vat = new int[customers];
+			for (int i = 0; i < customers; i++) {
+				vat[i] = vats.next();
+				CustomerService.INSTANCE.addCustomer(vat[i], "CUSTOMER " + i, 210000000 + i);
+			}
+			DataSource.INSTANCE.release();
+
+			for (Mode mode : Mode.values()) {
+				Mode started = RequestExecutor.INSTANCE.start(mode, config.maxSize,
+						mode == Mode.POOL ? RequestExecutor.DEFAULT_QUEUE_SIZE : admitted,
+						RequestExecutor.DEFAULT_TIMEOUT_MILLIS);
+				run(started, vat, requests, burst, clientMillis);
+				RequestExecutor.INSTANCE.shutdown();
+			}
+
+			DataSource.INSTANCE.close();
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("SHUTDOWN");
+			}
+		}
+	}
+
+	private static void run(Mode mode, int[] vat, int requests, int burst, long clientMillis)
+			throws InterruptedException {
+		AtomicInteger rejected = new AtomicInteger();
+		AtomicInteger unavailable = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		CountDownLatch finished = new CountDownLatch(requests);
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			int customer = vat[i % vat.length];
+			try {
+				RequestExecutor.INSTANCE.execute(() -> {
+					try {
+						CustomerService.INSTANCE.getCustomerByVat(customer);
+						DataSource.INSTANCE.release();
+						Thread.sleep(clientMillis);
+					} catch (Exception e) {
+						if (DataSource.INSTANCE.connectionTimedOut())
+							unavailable.incrementAndGet();
+						else
+							failed.incrementAndGet();
+					} finally {
+						DataSource.INSTANCE.release();
+						finished.countDown();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				rejected.incrementAndGet();
+				finished.countDown();
+			}
+			if ((i + 1) % burst == 0)
+				Thread.sleep(clientMillis);
+		}
+		finished.await();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		int served = requests - rejected.get() - unavailable.get() - failed.get();
+		System.out.printf("%-7s served %6d, rejected %6d, unavailable %4d, failed %4d in %6.2fs: %8.0f requests/s%n",
+				mode, served, rejected.get(), unavailable.get(), failed.get(), seconds, served / seconds);
+	}
+}
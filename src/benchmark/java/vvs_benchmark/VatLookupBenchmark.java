@@ -0,0 +1,119 @@
+package vvs_benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Random;
+
+import webapp.CreateDatabase;
+import webapp.persistence.AddressRowDataGateway;
+import webapp.persistence.CustomerSalesCache;
+import webapp.persistence.DataSource;
+import webapp.persistence.PersistenceException;
+import webapp.persistence.SaleDeliveryRowDataGateway;
+import webapp.persistence.SaleRowDataGateway;
+
+/**
+ * Measures the latency of the per-customer lookups (sales, addresses and
+ * deliveries by customer VAT) as the tables grow, before and after the
+ * schema migrations add the customer_vat indexes.
+ *
+ * Every customer has the same number of rows whatever the table size, so
+ * an indexed lookup should cost the same at every size while a table scan
+ * grows linearly.
+ *
+ * System properties:
+ *   bench.sizes         comma separated table sizes (default 10000,100000,1000000)
+ *   bench.rowsPerVat    rows of each table per customer (default 10)
+ *   bench.lookups       measured lookups per gateway method (default 200)
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:java -Dbenchmark.main=vvs_benchmark.VatLookupBenchmark
+ */
+public class VatLookupBenchmark {
+
+	private static final int FIRST_VAT = 100000000;
+	private static final int BATCH_SIZE = 10000;
+
+	public static void main(String[] args) throws Exception {
+		String[] sizes = System.getProperty("bench.sizes", "10000,100000,1000000").split(",");
+		int rowsPerVat = Integer.getInteger("bench.rowsPerVat", 10);
+		int lookups = Integer.getInteger("bench.lookups", 200);
+		// the sales lookups must reach the database to show the effect of the indexes
+		CustomerSalesCache.INSTANCE.configure(0, 0);
+
+		System.out.printf("%12s %10s %14s %14s %14s%n", "rows", "indexes", "sales (us)", "addresses (us)", "deliveries (us)");
+		for (String size : sizes) {
+			int rows = Integer.parseInt(size.trim());
+			int customers = Math.max(1, rows / rowsPerVat);
+			String url = "jdbc:hsqldb:mem:vatlookup" + rows;
+			try (Connection connection = DriverManager.getConnection(url, "SA", "")) {
+				CreateDatabase.runScript(connection, "src/main/resources/createDDLHSQLDB.sql");
+				populate(connection, rows, customers);
+				DataSource.INSTANCE.connect(url, "SA", "");
+
+				report(rows, "no", customers, lookups);
+				CreateDatabase.migrate(connection);
+				report(rows, "yes", customers, lookups);
+
+				DataSource.INSTANCE.close();
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("SHUTDOWN");
+				}
+			}
+		}
+	}
+
+	private static void populate(Connection connection, int rows, int customers) throws Exception {
+		connection.setAutoCommit(false);
+		fill(connection, "insert into sale (date, total, status, customer_vat) values (CURRENT_DATE, 0.0, 'O', ?)",
+				rows, customers);
+		fill(connection, "insert into address (address, customer_vat) values ('Campo Grande, Lisboa', ?)",
+				rows, customers);
+		fill(connection, "insert into saledelivery (sale_id, customer_vat, address_id) values (1, ?, 1)",
+				rows, customers);
+		connection.setAutoCommit(true);
+	}
+
+	private static void fill(Connection connection, String sql, int rows, int customers) throws Exception {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			for (int i = 0; i < rows; i++) {
+				statement.setInt(1, FIRST_VAT + i % customers);
+				statement.addBatch();
+				if ((i + 1) % BATCH_SIZE == 0)
+					statement.executeBatch();
+			}
+			if (rows % BATCH_SIZE != 0)
+				statement.executeBatch();
+			connection.commit();
+		}
+	}
+
+	private static void report(int rows, String indexes, int customers, int lookups) throws PersistenceException {
+		Random random = new Random(42);
+		double sales = measure(lookups, () -> new SaleRowDataGateway().getAllSales(randomVat(random, customers)));
+		double addresses = measure(lookups, () -> new AddressRowDataGateway().getCustomerAddresses(randomVat(random, customers)));
+		double deliveries = measure(lookups, () -> new SaleDeliveryRowDataGateway().getAllSaleDelivery(randomVat(random, customers)));
+		System.out.printf("%12d %10s %14.1f %14.1f %14.1f%n", rows, indexes, sales, addresses, deliveries);
+	}
+
+	private static int randomVat(Random random, int customers) {
+		return FIRST_VAT + random.nextInt(customers);
+	}
+
+	/**
+	 * @return The mean latency of the lookup in microseconds, after a warm up
+	 */
+	private static double measure(int lookups, Lookup lookup) throws PersistenceException {
+		for (int i = 0; i < Math.max(10, lookups / 10); i++)
+			lookup.run();
+		long start = System.nanoTime();
+		for (int i = 0; i < lookups; i++)
+			lookup.run();
+		return (System.nanoTime() - start) / 1000.0 / lookups;
+	}
+
+	private interface Lookup {
+		void run() throws PersistenceException;
+	}
+}
@@ -0,0 +1,40 @@
+package vvs_benchmark;
+
+/**
+ * Generates distinct, valid (modulo 11 check digit) VAT numbers in
+ * increasing order.
+ */
+public class VatNumbers {
+
+	/**
+	 * The first 8 digits of the next candidate
+	 */
+	private int prefix;
+
+	/**
+	 * @param start The first candidate VAT number (9 digits, starting with 1, 2, 5, 6, 8 or 9)
+	 */
+	public VatNumbers(int start) {
+		this.prefix = start / 10;
+	}
+
+	/**
+	 * @return The next valid VAT number
+	 */
+	public int next() {
+		while (true) {
+			int candidate = prefix++;
+			int sum = 0;
+			int digits = candidate;
+			for (int i = 2; i < 10 && digits != 0; i++) {
+				sum += digits % 10 * i;
+				digits /= 10;
+			}
+			int checkDigit = 11 - sum % 11;
+			if (checkDigit == 10)
+				checkDigit = 0;
+			if (checkDigit < 10)
+				return candidate * 10 + checkDigit;
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package vvs_benchmark;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+
+import vvs_htmlunit.NewSaleTest;
+import vvs_htmlunit.WebappUtils;
+import webapp.metrics.LatencyHistogram;
+
+/**
+ * Puts a running deployment of the application (at the HtmlUnit tests'
+ * APPLICATION_URL) under load, with virtual users that go through the same
+ * pages as the HtmlUnit tests, using their WebappUtils flows.
+ *
+ * Every virtual user has a browser (WebClient) of its own and, in a loop and
+ * with no think time: adds a customer, an address and a sale to it, looks up
+ * a customer (one of the seeded ones, if any) and lists the new customer's
+ * sales, adds a delivery of the sale, closes it and removes the customer.
+ *
+ * The number of concurrent users is ramped up through bench.users, each level
+ * running for bench.stepSeconds (the first bench.warmupSeconds of which are
+ * not measured). For each level it reports the throughput of each step and
+ * its latency percentiles, and writes them to bench.out as CSV, so that runs
+ * can be compared to catch scalability regressions. With bench.maxP99Millis
+ * set, it exits with status 1 when the p99 of any step exceeds it.
+ *
+ * The dataset can first be seeded, through the JSON API, with
+ * bench.seedCustomers customers (of known VAT numbers, so seeding again only
+ * adds the missing ones) with bench.seedSales sales each.
+ *
+ * System properties:
+ *   bench.users          comma separated numbers of concurrent users (default 1,2,4,8,16)
+ *   bench.stepSeconds    duration of each level (default 30)
+ *   bench.warmupSeconds  unmeasured start of each level (default 5)
+ *   bench.seedCustomers  customers to seed (default 0)
+ *   bench.seedSales      sales of each seeded customer (default 5)
+ *   bench.out            the CSV report (default target/web-load.csv)
+ *   bench.maxP99Millis   the p99 above which the run fails (default none)
+ *
+ * Deploy the application (mvn package wildfly:deploy) and run with:
+ * mvn -Pbenchmark test-compile exec:java -Dbenchmark.main=vvs_benchmark.WebLoadBenchmark
+ */
+public class WebLoadBenchmark {
+
+	private static final String APPLICATION_URL = NewSaleTest.APPLICATION_URL;
+
+	/**
+	 * The first VAT number of the seeded customers
+	 */
+	private static final int FIRST_SEEDED_VAT = 600000000;
+
+	/**
+	 * The first VAT number of the customers of the virtual users; each user
+	 * gets a range of USER_VATS of its own
+	 */
+	private static final int FIRST_USER_VAT = 800000000;
+	private static final int USER_VATS = 100000;
+
+	private static final int SEED_THREADS = 8;
+
+	/**
+	 * The steps of a virtual user's loop, in order
+	 */
+	private static final List<String> STEPS = Arrays.asList("add customer", "add address", "add sale",
+			"customer info", "customer sales", "add delivery", "close sale", "remove customer");
+
+	/**
+	 * The statistics of a step at one load level
+	 */
+	private static class StepStats {
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final LongAdder errors = new LongAdder();
+	}
+
+	@FunctionalInterface
+	private interface Step {
+		void run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String[] levels = System.getProperty("bench.users", "1,2,4,8,16").split(",");
+		long stepSeconds = Long.getLong("bench.stepSeconds", 30);
+		long warmupSeconds = Long.getLong("bench.warmupSeconds", 5);
+		int seedCustomers = Integer.getInteger("bench.seedCustomers", 0);
+		int seedSales = Integer.getInteger("bench.seedSales", 5);
+		Path out = Paths.get(System.getProperty("bench.out", "target/web-load.csv"));
+		String maxP99 = System.getProperty("bench.maxP99Millis");
+
+		List<Integer> seeded = seed(seedCustomers, seedSales);
+
+		boolean failed = false;
+		Files.createDirectories(out.toAbsolutePath().getParent());
+		try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+			csv.println("users,step,count,errors,throughput,meanMillis,p50Millis,p99Millis,p999Millis,maxMillis");
+			for (String level : levels) {
+				int users = Integer.parseInt(level.trim());
+				Map<String, StepStats> stats = run(users, seeded, stepSeconds, warmupSeconds);
+				double seconds = stepSeconds - warmupSeconds;
+				System.out.printf("%n%d user(s)%n%-16s %8s %7s %9s %9s %9s %9s %9s%n", users, "step", "count",
+						"errors", "per sec", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+				for (Map.Entry<String, StepStats> e : stats.entrySet()) {
+					LatencyHistogram h = e.getValue().latencies;
+					long errors = e.getValue().errors.sum();
+					double p99 = h.getPercentile(99) / 1000.0;
+					System.out.printf("%-16s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", e.getKey(), h.getCount(), errors,
+							h.getCount() / seconds, h.getPercentile(50) / 1000.0, p99,
+							h.getPercentile(99.9) / 1000.0, h.getMax() / 1000.0);
+					csv.printf("%d,%s,%d,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f%n", users, e.getKey(), h.getCount(), errors,
+							h.getCount() / seconds, h.getMean() / 1000, h.getPercentile(50) / 1000.0, p99,
+							h.getPercentile(99.9) / 1000.0, h.getMax() / 1000.0);
+					if (maxP99 != null && p99 > Double.parseDouble(maxP99)) {
+						System.out.printf("  p99 of %s above %s ms%n", e.getKey(), maxP99);
+						failed = true;
+					}
+				}
+			}
+		}
+		System.out.println("\nReport written to " + out);
+		if (failed)
+			System.exit(1);
+	}
+
+	/**
+	 * Runs a number of virtual users for a while
+	 *
+	 * @return The statistics of each step, measured after the warm up
+	 */
+	private static Map<String, StepStats> run(int users, List<Integer> seeded, long stepSeconds, long warmupSeconds)
+			throws InterruptedException {
+		Map<String, StepStats> stats = new LinkedHashMap<>();
+		for (String step : STEPS)
+			stats.put(step, new StepStats());
+		long now = System.nanoTime();
+		long measureFrom = now + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		long until = now + TimeUnit.SECONDS.toNanos(stepSeconds);
+		List<Thread> threads = new ArrayList<>();
+		for (int u = 0; u < users; u++) {
+			int user = u;
+			Thread t = new Thread(() -> user(user, seeded, stats, measureFrom, until), "virtual-user-" + u);
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t : threads)
+			t.join();
+		return stats;
+	}
+
+	/**
+	 * The loop of a virtual user
+	 */
+	private static void user(int user, List<Integer> seeded, Map<String, StepStats> stats, long measureFrom,
+			long until) {
+		VatNumbers vats = new VatNumbers(FIRST_USER_VAT + user * USER_VATS);
+		try (WebClient webClient = newWebClient()) {
+			HtmlPage index = webClient.getPage(APPLICATION_URL);
+			while (System.nanoTime() < until) {
+				String vat = String.valueOf(vats.next());
+				String readVat = seeded.isEmpty() ? vat
+						: String.valueOf(seeded.get(ThreadLocalRandom.current().nextInt(seeded.size())));
+				String[] saleId = new String[1];
+				boolean ok = time(stats, "add customer", measureFrom,
+						() -> WebappUtils.addCustomer(vat, "LOAD USER " + user, "217500000", index))
+					&& time(stats, "add address", measureFrom,
+						() -> WebappUtils.addAddressToCustomer(vat, "Campo Grande", "1", "1749-016", "Lisboa", index))
+					&& time(stats, "add sale", measureFrom, () -> WebappUtils.addSaleToCustomer(vat, index))
+					&& time(stats, "customer info", measureFrom, () -> WebappUtils.getCustomerInfoPage(readVat))
+					&& time(stats, "customer sales", measureFrom, () -> {
+						List<String> sales = WebappUtils.getExistingSaleIds(vat);
+						if (sales.isEmpty())
+							throw new IllegalStateException("The sale of customer " + vat + " is not listed");
+						saleId[0] = sales.get(0);
+					})
+					&& time(stats, "add delivery", measureFrom, () -> WebappUtils.addSaleDelivery(vat, saleId[0], index))
+					&& time(stats, "close sale", measureFrom, () -> WebappUtils.closeSale(saleId[0], index));
+				// removes the customer even when a step failed, so the dataset does not grow
+				time(stats, "remove customer", ok ? measureFrom : Long.MAX_VALUE,
+						() -> WebappUtils.removeCustomer(vat, index));
+			}
+		} catch (IOException e) {
+			System.out.println("Virtual user " + user + " could not open " + APPLICATION_URL + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Runs a step, recording its latency (or its failure) when it starts
+	 * after measureFrom
+	 *
+	 * @return Whether the step succeeded
+	 */
+	private static boolean time(Map<String, StepStats> stats, String name, long measureFrom, Step step) {
+		long start = System.nanoTime();
+		boolean ok;
+		try {
+			step.run();
+			ok = true;
+		} catch (Exception | AssertionError e) {
+			ok = false;
+		}
+		if (start >= measureFrom) {
+			StepStats s = stats.get(name);
+			if (ok)
+				s.latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+			else
+				s.errors.increment();
+		}
+		return ok;
+	}
+
+	/**
+	 * Adds the customers (and their sales) that are missing from the dataset
+	 *
+	 * @return The VAT numbers of the seeded customers
+	 */
+	private static List<Integer> seed(int customers, int salesPerCustomer) throws InterruptedException {
+		if (customers <= 0)
+			return Collections.emptyList();
+		VatNumbers vats = new VatNumbers(FIRST_SEEDED_VAT);
+		List<Integer> seeded = new ArrayList<>(customers);
+		for (int i = 0; i < customers; i++)
+			seeded.add(vats.next());
+
+		System.out.printf("Seeding %d customers with %d sales each...%n", customers, salesPerCustomer);
+		long start = System.nanoTime();
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger added = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < SEED_THREADS; t++) {
+			Thread thread = new Thread(() -> {
+				try (WebClient webClient = newWebClient()) {
+					int i;
+					while ((i = next.getAndIncrement()) < customers) {
+						String vat = String.valueOf(seeded.get(i));
+						WebResponse customer = post(webClient, "api/customers",
+								new NameValuePair("vat", vat),
+								new NameValuePair("designation", "SEEDED CUSTOMER " + i),
+								new NameValuePair("phoneNumber", String.valueOf(210000000 + i)));
+						if (customer.getStatusCode() != 201)
+							// already seeded
+							continue;
+						for (int s = 0; s < salesPerCustomer; s++)
+							post(webClient, "api/customers/" + vat + "/sales");
+						added.incrementAndGet();
+					}
+				} catch (IOException e) {
+					System.out.println("Seeding failed: " + e.getMessage());
+				}
+			}, "seeder-" + t);
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		System.out.printf("Seeded %d new customers in %.1fs%n", added.get(), (System.nanoTime() - start) / 1e9);
+		return seeded;
+	}
+
+	private static WebResponse post(WebClient webClient, String path, NameValuePair... params) throws IOException {
+		WebRequest request = new WebRequest(new URL(APPLICATION_URL + path), HttpMethod.POST);
+		request.setRequestParameters(Arrays.asList(params));
+		return webClient.loadWebResponse(request);
+	}
+
+	private static WebClient newWebClient() {
+		WebClient webClient = new WebClient(BrowserVersion.getDefault());
+		// the pages have no scripts or styles worth loading under load
+		webClient.getOptions().setJavaScriptEnabled(false);
+		webClient.getOptions().setCssEnabled(false);
+		return webClient;
+	}
+}
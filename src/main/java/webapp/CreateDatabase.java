@@ -4,38 +4,129 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 public class CreateDatabase {
 
+	/**
+	 * The schema migrations, in the order they must be applied. The version of
+	 * a migration is its position in this list (starting at 1), so new
+	 * migrations are only ever appended. The scripts live in the migrations
+	 * folder of the class path, one SQL command per line.
+	 */
+	private static final String[] MIGRATIONS = {
+		"001_customer_vat_indexes.sql",
+		"002_sale_lines.sql",
+		"003_customer_sales_summary.sql",
+		"004_sale_date_indexes.sql",
+		"005_customer_sales_summary_delete.sql",
+	};
+
 	public static void main(String[] args) throws FileNotFoundException, IOException, SQLException, ClassNotFoundException {
 		new CreateDatabase().createCSSHSQLDB();
 	}
 
 	public void createCSSHSQLDB() throws FileNotFoundException, IOException, SQLException, ClassNotFoundException {
 		Connection dbc = DriverManager.getConnection ("jdbc:hsqldb:file:src/main/resources/data/hsqldb/cssdb", "SA", "");
-		
+
 		runScript(dbc, "src/main/resources/dropDDLHSQLDB.sql");
 		runScript(dbc, "src/main/resources/createDDLHSQLDB.sql");
-		
+		migrate(dbc);
+
 		dbc.close();
 	}
- 
+
 
 	public static void runScript (Connection connection, String scriptFilename) throws FileNotFoundException, IOException, SQLException {
 		try (BufferedReader br = new BufferedReader(new FileReader(scriptFilename))) {
-			String command;
-			int i = 1;
-			while ((command = br.readLine()) != null) {
-				System.out.println(i + ": " + command);
-				i++;
-				Statement statement = connection.createStatement();
-				statement.execute(command.toString());
-				statement.close();
+			runScript(connection, br);
+		}
+	}
+
+	private static void runScript (Connection connection, BufferedReader br) throws IOException, SQLException {
+		String command;
+		int i = 1;
+		while ((command = br.readLine()) != null) {
+			System.out.println(i + ": " + command);
+			i++;
+			if (command.trim().isEmpty() || command.startsWith("--"))
+				continue;
+			Statement statement = connection.createStatement();
+			statement.execute(command.toString());
+			statement.close();
+		}
+	}
+
+
+	// Schema migrations
+
+	private static final String CREATE_SCHEMA_VERSION_SQL =
+			"CREATE TABLE IF NOT EXISTS SCHEMA_VERSION (VERSION INTEGER PRIMARY KEY NOT NULL, " +
+			"SCRIPT VARCHAR(100) NOT NULL, APPLIED_ON TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+
+	private static final String GET_SCHEMA_VERSION_SQL =
+			"SELECT COALESCE(MAX(VERSION), 0) FROM SCHEMA_VERSION";
+
+	private static final String INSERT_SCHEMA_VERSION_SQL =
+			"INSERT INTO SCHEMA_VERSION (VERSION, SCRIPT) VALUES (?, ?)";
+
+	/**
+	 * Brings the schema of a database up to date by applying, in order, the
+	 * migrations it has not seen yet. The version reached is recorded in the
+	 * SCHEMA_VERSION table, so running it on an up-to-date database does nothing.
+	 * HSQLDB commits DDL immediately, so the scripts use IF NOT EXISTS and can
+	 * be run again after a failure.
+	 *
+	 * @param connection A connection to the database to migrate
+	 * @return The number of migrations applied
+	 * @throws IOException In case a migration script cannot be read
+	 * @throws SQLException In case a migration fails
+	 */
+	public static int migrate (Connection connection) throws IOException, SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(CREATE_SCHEMA_VERSION_SQL);
+		}
+		int current;
+		try (Statement statement = connection.createStatement();
+			 ResultSet rs = statement.executeQuery(GET_SCHEMA_VERSION_SQL)) {
+			rs.next();
+			current = rs.getInt(1);
+		}
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try {
+			for (int version = current + 1; version <= MIGRATIONS.length; version++) {
+				applyMigration(connection, version, MIGRATIONS[version - 1]);
+				connection.commit();
 			}
+		} catch (IOException | SQLException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+		return Math.max(0, MIGRATIONS.length - current);
+	}
+
+	private static void applyMigration (Connection connection, int version, String script) throws IOException, SQLException {
+		InputStream in = CreateDatabase.class.getResourceAsStream("/migrations/" + script);
+		if (in == null)
+			throw new IOException("Migration script " + script + " not found");
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			runScript(connection, br);
+		}
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_SCHEMA_VERSION_SQL)) {
+			statement.setInt(1, version);
+			statement.setString(2, script);
+			statement.executeUpdate();
 		}
 	}
 
@@ -0,0 +1,51 @@
+package webapp;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+import webapp.persistence.DataSource;
+import webapp.persistence.PersistenceException;
+import webapp.services.ApplicationException;
+import webapp.services.CustomerImportDTO;
+import webapp.services.CustomerService;
+import webapp.services.ImportRejectionDTO;
+
+/**
+ * Loads a CSV file of customers (vat,designation,phone) into the database.
+ * 
+ * Usage: ImportCustomers <csv file> [batch size] [database url]
+ */
+public class ImportCustomers {
+
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private static final String DEFAULT_DB_URL = "jdbc:hsqldb:file:src/main/resources/data/hsqldb/cssdb";
+
+	public static void main(String[] args) throws IOException, SQLException, PersistenceException, ApplicationException {
+		if (args.length < 1) {
+			System.out.println("Usage: ImportCustomers <csv file> [batch size] [database url]");
+			return;
+		}
+		int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BATCH_SIZE;
+		String url = args.length > 2 ? args[2] : DEFAULT_DB_URL;
+
+		DataSource.INSTANCE.connect(url, "SA", "");
+		try (Reader in = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)) {
+			CreateDatabase.migrate(DataSource.INSTANCE.getConnection());
+			long start = System.nanoTime();
+			CustomerImportDTO report = CustomerService.INSTANCE.importCustomers(in, batchSize);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			for (ImportRejectionDTO rejection : report.rejections)
+				System.out.println("line " + rejection.line + ": " + rejection.reason + " [" + rejection.record + "]");
+			System.out.printf("Imported %d customers, rejected %d, in %.1fs (%.0f customers/s)%n",
+					report.imported, report.rejections.size(), seconds, report.imported / seconds);
+		} finally {
+			DataSource.INSTANCE.close();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package webapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies, in microseconds, from which percentiles can be
+ * read without keeping the recorded values.
+ *
+ * Like HdrHistogram, the buckets are log-linear: values below 2^SUB_BITS
+ * have a bucket each, and every power of two above is split in 2^SUB_BITS
+ * equal buckets, so any value is known within 1/2^SUB_BITS (about 3%) of
+ * itself whatever its magnitude. Values up to about an hour and a quarter
+ * (2^32 microseconds) fit in under a thousand counters; longer ones are
+ * counted as that.
+ *
+ * Recording is lock free and can be done by any number of threads at once.
+ * Reading while recording gives a view that may miss the latest values.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The number of bits of a value kept exactly (the rest only give its magnitude)
+	 */
+	private static final int SUB_BITS = 5;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	/**
+	 * The largest value recorded as such
+	 */
+	private static final long MAX_VALUE = (1L << 32) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency
+	 *
+	 * @param micros The latency in microseconds
+	 */
+	public void record(long micros) {
+		long value = Math.max(0, Math.min(MAX_VALUE, micros));
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		if (value > max.get())
+			max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * @return The number of latencies recorded
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return The mean latency in microseconds (0 when none was recorded)
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * @return The largest latency recorded, in microseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile The percentile, between 0 and 100 (e.g. 99.9)
+	 * @return The latency, in microseconds, below or at which the given
+	 * percentage of the recorded latencies are (0 when none was recorded)
+	 */
+	public long getPercentile(double percentile) {
+		long[] snapshot = new long[counts.length()];
+		long total = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return Math.min(highestInBucket(i), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * @return The bucket of a value
+	 */
+	static int index(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		int sub = (int) (value >>> magnitude) & (SUB_BUCKETS - 1);
+		return ((magnitude + 1) << SUB_BITS) | sub;
+	}
+
+	/**
+	 * @return The largest value counted in a bucket
+	 */
+	static long highestInBucket(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int magnitude = (index >>> SUB_BITS) - 1;
+		long lowest = (long) (SUB_BUCKETS | (index & (SUB_BUCKETS - 1))) << magnitude;
+		return lowest + (1L << magnitude) - 1;
+	}
+}
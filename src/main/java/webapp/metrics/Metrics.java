@@ -0,0 +1,151 @@
+package webapp.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The application's metrics: the statistics of the requests of each page
+ * controller and of the executions of each SQL statement.
+ *
+ * The statistics are created the first time they are asked for and live as
+ * long as the application. Once registerMBeans is called (on start up) each
+ * of them is also published as an MBean, named webapp:type=Controller,name="..."
+ * or webapp:type=Statement,name="..." (the SQL text).
+ *
+ * Setting -Dwebapp.metrics.enabled=false turns the recording off.
+ */
+public enum Metrics {
+	INSTANCE;
+
+	/**
+	 * The domain of the MBeans
+	 */
+	private static final String DOMAIN = "webapp";
+
+	/**
+	 * The most SQL texts that get statistics of their own; executions of any
+	 * other are counted together under OTHER_STATEMENTS (the gateways only use
+	 * constant SQL texts, so this only guards against a leak)
+	 */
+	private static final int MAX_STATEMENTS = 1000;
+
+	private static final String OTHER_STATEMENTS = "(other statements)";
+
+	private final boolean enabled = Boolean.parseBoolean(System.getProperty("webapp.metrics.enabled", "true"));
+
+	private final ConcurrentMap<String, OperationStats> controllers = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, OperationStats> statements = new ConcurrentHashMap<>();
+
+	/**
+	 * The server where the MBeans are registered (null while they are not)
+	 */
+	private volatile MBeanServer server;
+
+	/**
+	 * @return Whether metrics are recorded
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return The statistics of the requests of a page controller
+	 */
+	public OperationStats controller(String name) {
+		OperationStats stats = controllers.get(name);
+		return stats != null ? stats : create(controllers, "Controller", name);
+	}
+
+	/**
+	 * @return The statistics of the executions of an SQL statement
+	 */
+	public OperationStats statement(String sql) {
+		OperationStats stats = statements.get(sql);
+		if (stats != null)
+			return stats;
+		if (statements.size() >= MAX_STATEMENTS)
+			sql = OTHER_STATEMENTS;
+		return create(statements, "Statement", sql);
+	}
+
+	/**
+	 * @return The statistics of the page controllers, by name
+	 */
+	public Map<String, OperationStats> getControllers() {
+		return new TreeMap<>(controllers);
+	}
+
+	/**
+	 * @return The statistics of the SQL statements, by SQL text
+	 */
+	public Map<String, OperationStats> getStatements() {
+		return new TreeMap<>(statements);
+	}
+
+	/**
+	 * Publishes the statistics, those there are and those to come, in the
+	 * platform MBean server
+	 */
+	public synchronized void registerMBeans() {
+		if (server != null)
+			return;
+		server = ManagementFactory.getPlatformMBeanServer();
+		for (OperationStats stats : controllers.values())
+			register("Controller", stats);
+		for (OperationStats stats : statements.values())
+			register("Statement", stats);
+	}
+
+	/**
+	 * Removes the statistics from the MBean server (so that a redeployed
+	 * application does not find the old ones there)
+	 */
+	public synchronized void unregisterMBeans() {
+		if (server == null)
+			return;
+		for (OperationStats stats : controllers.values())
+			unregister("Controller", stats);
+		for (OperationStats stats : statements.values())
+			unregister("Statement", stats);
+		server = null;
+	}
+
+	private synchronized OperationStats create(ConcurrentMap<String, OperationStats> all, String type, String name) {
+		OperationStats stats = all.get(name);
+		if (stats == null) {
+			stats = new OperationStats(name);
+			all.put(name, stats);
+			if (server != null)
+				register(type, stats);
+		}
+		return stats;
+	}
+
+	private void register(String type, OperationStats stats) {
+		try {
+			server.registerMBean(stats, objectName(type, stats));
+		} catch (JMException e) {
+			// the statistics are still recorded and shown by the metrics page
+		}
+	}
+
+	private void unregister(String type, OperationStats stats) {
+		try {
+			server.unregisterMBean(objectName(type, stats));
+		} catch (JMException e) {
+			// already gone
+		}
+	}
+
+	private static ObjectName objectName(String type, OperationStats stats) throws JMException {
+		return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(stats.getName()));
+	}
+}
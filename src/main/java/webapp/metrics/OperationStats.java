@@ -0,0 +1,90 @@
+package webapp.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The statistics of an operation (the requests of a page controller, or the
+ * executions of an SQL statement): how many times it was performed, how many
+ * of those failed, how many rows it went through and how long it took.
+ */
+public class OperationStats implements OperationStatsMBean {
+
+	private final String name;
+
+	private final LongAdder errors = new LongAdder();
+
+	private final LongAdder rows = new LongAdder();
+
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	OperationStats(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return What the operation is (the controller's name or the SQL text)
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Records that the operation was performed
+	 *
+	 * @param startNanos When (System.nanoTime) it started
+	 * @param failed Whether it failed
+	 */
+	public void record(long startNanos, boolean failed) {
+		latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+		if (failed)
+			errors.increment();
+	}
+
+	/**
+	 * Counts rows the operation read or changed
+	 */
+	public void addRows(long n) {
+		rows.add(n);
+	}
+
+	@Override
+	public long getCount() {
+		return latencies.getCount();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getRows() {
+		return rows.sum();
+	}
+
+	@Override
+	public double getMeanMillis() {
+		return latencies.getMean() / 1000;
+	}
+
+	@Override
+	public double getP50Millis() {
+		return latencies.getPercentile(50) / 1000.0;
+	}
+
+	@Override
+	public double getP99Millis() {
+		return latencies.getPercentile(99) / 1000.0;
+	}
+
+	@Override
+	public double getP999Millis() {
+		return latencies.getPercentile(99.9) / 1000.0;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return latencies.getMax() / 1000.0;
+	}
+}
@@ -0,0 +1,33 @@
+package webapp.metrics;
+
+/**
+ * The management interface of the statistics of an operation, as seen in
+ * JMX consoles (e.g. jconsole) under the webapp domain
+ */
+public interface OperationStatsMBean {
+
+	/**
+	 * @return How many times the operation was performed
+	 */
+	long getCount();
+
+	/**
+	 * @return How many times the operation failed
+	 */
+	long getErrors();
+
+	/**
+	 * @return How many rows the operation read or changed, in all
+	 */
+	long getRows();
+
+	double getMeanMillis();
+
+	double getP50Millis();
+
+	double getP99Millis();
+
+	double getP999Millis();
+
+	double getMaxMillis();
+}
@@ -31,6 +31,11 @@ public class AddressRowDataGateway{
 		
 	}
 	
+	AddressRowDataGateway (int id, String address, int customerVat) {
+		this(address, customerVat);
+		this.id = id;
+	}
+	
 	public AddressRowDataGateway(ResultSet rs) throws RecordNotFoundException {
 		try {
 			fillAttributes(rs.getString("address"), 
@@ -73,13 +78,23 @@ public class AddressRowDataGateway{
 			"values (DEFAULT, ?, ?)";
 	
 	
-	public void insert() throws PersistenceException {
-		try (PreparedStatement statement = DataSource.INSTANCE.prepare(INSERT_ADDRESS_SQL)){
+	/**
+	 * Stores the address
+	 * 
+	 * @return The id the database generated for the address (also set in this gateway)
+	 */
+	public int insert() throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepareGetGenKey(INSERT_ADDRESS_SQL)){
 			// set statement arguments
 			statement.setString(1, address);
 			statement.setInt(2, customerVat);
 			// executes SQL
 			statement.executeUpdate();
+			try (ResultSet rs = statement.getGeneratedKeys()) {
+				rs.next();
+				id = rs.getInt(1);
+				return id;
+			}
 		}  catch (SQLException e) {
 			throw new PersistenceException("Internal error!", e);
 		}
@@ -113,12 +128,37 @@ public class AddressRowDataGateway{
 					addrs.add(load(rs));
 				}
 				rs.next();
+				DataSource.INSTANCE.rowsRead(statement, addrs.size());
 				return addrs;
 			}
 		} catch (SQLException e) {
 			throw new PersistenceException("Internal error getting a customer by its VAT number", e);
 		}
 	}
+	
+	/**
+	 * The remove addresses by customer vat SQL statement
+	 */
+	private static final String	REMOVE_ADDRESSES_BY_CUSTOMER_VAT_SQL =
+			"delete from address " +
+				"where customer_Vat = ?";
+	
+	/**
+	 * Removes all the addresses of a customer with a single statement
+	 * 
+	 * @param customerVat The customer's VAT number
+	 * @return The number of addresses removed
+	 * @throws PersistenceException When there is an error removing the addresses
+	 */
+	public int removeCustomerAddresses (int customerVat) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(REMOVE_ADDRESSES_BY_CUSTOMER_VAT_SQL)){
+			statement.setInt(1, customerVat);
+			return statement.executeUpdate();
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error removing the addresses of customer " + customerVat + ".", e);
+		}
+	}
+	
 	private static AddressRowDataGateway load(ResultSet rs) throws RecordNotFoundException{
 		try {
 			AddressRowDataGateway newCustomerAddress = new AddressRowDataGateway(rs.getString("address"), rs.getInt("customer_vat"));
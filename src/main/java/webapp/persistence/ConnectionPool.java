@@ -0,0 +1,178 @@
+package webapp.persistence;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of database connections.
+ *
+ * At most maxSize connections are handed out at the same time; a thread
+ * asking for one more waits up to acquireTimeoutMillis for a connection
+ * to be returned. Idle connections are kept most-recently-used first so
+ * the ones that stay unused end up at the tail, where the evictor closes
+ * them once they have been idle for longer than idleTimeoutMillis.
+ *
+ */
+class ConnectionPool {
+
+	private final String url;
+	private final String username;
+	private final String password;
+	private final ConnectionPoolConfig config;
+
+	/**
+	 * One permit per connection that may still be handed out
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * The connections available for borrowing, most recently used first
+	 */
+	private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+
+	/**
+	 * Closes connections that have been idle for too long
+	 */
+	private final ScheduledExecutorService evictor;
+
+	/**
+	 * The statement cache counters of all the connections of the pool
+	 */
+	private final StatementCache.Stats statementCacheStats = new StatementCache.Stats();
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates the pool and opens its minimum number of connections
+	 *
+	 * @throws SQLException In case a connection cannot be established
+	 */
+	ConnectionPool(String url, String username, String password, ConnectionPoolConfig config) throws SQLException {
+		this.url = url;
+		this.username = username;
+		this.password = password;
+		this.config = config;
+		this.permits = new Semaphore(config.maxSize, true);
+		for (int i = 0; i < config.minSize; i++)
+			idle.addLast(open());
+		if (config.idleTimeoutMillis > 0) {
+			evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "connection-pool-evictor");
+				t.setDaemon(true);
+				return t;
+			});
+			long period = Math.max(1000, config.idleTimeoutMillis / 2);
+			evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+		} else
+			evictor = null;
+	}
+
+	/**
+	 * Hands out a connection, waiting for one to be released if the pool
+	 * is exhausted.
+	 *
+	 * @return A connection in auto commit mode
+	 * @throws ConnectionTimeoutException In case no connection becomes
+	 * available in time
+	 * @throws PersistenceException In case a new connection cannot be opened
+	 */
+	PooledConnection borrow() throws PersistenceException {
+		if (closed)
+			throw new PersistenceException("The connection pool is closed");
+		try {
+			if (!permits.tryAcquire(config.acquireTimeoutMillis, TimeUnit.MILLISECONDS))
+				throw new ConnectionTimeoutException("Timed out after " + config.acquireTimeoutMillis
+						+ "ms waiting for a database connection");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PersistenceException("Interrupted while waiting for a database connection", e);
+		}
+		try {
+			PooledConnection pc;
+			while ((pc = idle.pollFirst()) != null) {
+				if (!config.validateOnBorrow || pc.isValid(config.validationTimeoutSeconds))
+					return pc;
+				pc.close();
+			}
+			return open();
+		} catch (SQLException e) {
+			permits.release();
+			throw new PersistenceException("Cannot connect to database", e);
+		}
+	}
+
+	/**
+	 * Returns a borrowed connection to the pool. Connections that cannot be
+	 * reset to auto commit mode are discarded.
+	 *
+	 * @param pc The connection to return
+	 */
+	void release(PooledConnection pc) {
+		try {
+			pc.reset();
+			if (closed)
+				pc.close();
+			else {
+				pc.markIdle();
+				idle.addFirst(pc);
+				// close() may have drained the idle connections after the check above
+				if (closed && idle.removeFirstOccurrence(pc))
+					pc.close();
+			}
+		} catch (SQLException e) {
+			pc.close();
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Closes the idle connections and makes the pool refuse new requests.
+	 * Borrowed connections are closed as they are released.
+	 */
+	void close() {
+		closed = true;
+		if (evictor != null)
+			evictor.shutdownNow();
+		PooledConnection pc;
+		while ((pc = idle.pollFirst()) != null)
+			pc.close();
+	}
+
+	long getStatementCacheHits() {
+		return statementCacheStats.hits.sum();
+	}
+
+	long getStatementCacheMisses() {
+		return statementCacheStats.misses.sum();
+	}
+
+	long getStatementCacheEvictions() {
+		return statementCacheStats.evictions.sum();
+	}
+
+	/**
+	 * Closes the connections idle for longer than the idle timeout, keeping
+	 * at least minSize of them.
+	 */
+	private void evictIdle() {
+		long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(config.idleTimeoutMillis);
+		Iterator<PooledConnection> it = idle.descendingIterator();
+		while (it.hasNext() && idle.size() > config.minSize) {
+			PooledConnection pc = it.next();
+			if (pc.getIdleSince() - deadline < 0 && idle.removeLastOccurrence(pc))
+				pc.close();
+		}
+	}
+
+	private PooledConnection open() throws SQLException {
+		return new PooledConnection(this, DriverManager.getConnection(url, username, password),
+				config.statementCacheSize, statementCacheStats);
+	}
+}
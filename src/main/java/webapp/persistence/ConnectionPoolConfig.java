@@ -0,0 +1,90 @@
+package webapp.persistence;
+
+/**
+ * The tuning parameters of the connection pool behind the data source.
+ *
+ * The values can be overridden with system properties (see
+ * {@link #fromSystemProperties()}), e.g. -Dwebapp.db.pool.maxSize=20
+ *
+ */
+public class ConnectionPoolConfig {
+
+	/**
+	 * The prefix of the system properties read by fromSystemProperties
+	 */
+	private static final String PROPERTY_PREFIX = "webapp.db.pool.";
+
+	/**
+	 * The configuration used when none is given
+	 */
+	public static final ConnectionPoolConfig DEFAULT =
+			new ConnectionPoolConfig(2, 10, 5000, 600000, true, 2, 32);
+
+	/**
+	 * Number of idle connections opened on start up and never evicted
+	 */
+	public final int minSize;
+
+	/**
+	 * Maximum number of connections handed out at the same time
+	 */
+	public final int maxSize;
+
+	/**
+	 * How long (in milliseconds) a thread waits for a free connection
+	 * before giving up
+	 */
+	public final long acquireTimeoutMillis;
+
+	/**
+	 * How long (in milliseconds) a connection may stay idle in the pool
+	 * before being closed. Zero or less disables idle eviction.
+	 */
+	public final long idleTimeoutMillis;
+
+	/**
+	 * Whether a connection is checked to be alive before being handed out
+	 */
+	public final boolean validateOnBorrow;
+
+	/**
+	 * How long (in seconds) the validation of a connection may take
+	 */
+	public final int validationTimeoutSeconds;
+
+	/**
+	 * Maximum number of prepared statements cached by each connection.
+	 * Zero disables the statement cache.
+	 */
+	public final int statementCacheSize;
+
+	public ConnectionPoolConfig(int minSize, int maxSize, long acquireTimeoutMillis,
+			long idleTimeoutMillis, boolean validateOnBorrow, int validationTimeoutSeconds,
+			int statementCacheSize) {
+		if (maxSize < 1 || minSize < 0 || minSize > maxSize)
+			throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.validateOnBorrow = validateOnBorrow;
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	/**
+	 * @return The default configuration with the values overridden by the
+	 * webapp.db.pool.* system properties that are set.
+	 */
+	public static ConnectionPoolConfig fromSystemProperties() {
+		return new ConnectionPoolConfig(
+				Integer.getInteger(PROPERTY_PREFIX + "minSize", DEFAULT.minSize),
+				Integer.getInteger(PROPERTY_PREFIX + "maxSize", DEFAULT.maxSize),
+				Long.getLong(PROPERTY_PREFIX + "acquireTimeoutMillis", DEFAULT.acquireTimeoutMillis),
+				Long.getLong(PROPERTY_PREFIX + "idleTimeoutMillis", DEFAULT.idleTimeoutMillis),
+				Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "validateOnBorrow",
+						String.valueOf(DEFAULT.validateOnBorrow))),
+				Integer.getInteger(PROPERTY_PREFIX + "validationTimeoutSeconds", DEFAULT.validationTimeoutSeconds),
+				Integer.getInteger(PROPERTY_PREFIX + "statementCacheSize", DEFAULT.statementCacheSize));
+	}
+}
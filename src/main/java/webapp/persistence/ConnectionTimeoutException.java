@@ -0,0 +1,26 @@
+package webapp.persistence;
+
+
+/**
+ * No database connection became available within the pool's acquire
+ * timeout: the database is saturated, rather than failing.
+ *
+ */
+public class ConnectionTimeoutException extends PersistenceException {
+
+	/**
+	 * The serial version id
+	 */
+	private static final long serialVersionUID = -2838916374560912517L;
+
+	
+	/**
+	 * Creates an exception given an error message
+	 * 
+	 * @param message The error message
+	 */
+	public ConnectionTimeoutException(String message) {
+		super (message);
+	}
+
+}
@@ -0,0 +1,128 @@
+package webapp.persistence;
+
+/**
+ * A read-through cache of customers, keyed by VAT number, in front of
+ * CustomerFinder. It holds at most a given number of customers (the least
+ * recently used are evicted first) and each for at most a given time.
+ *
+ * The customer gateway methods that write a customer invalidate its entry
+ * (a phone number update is written through to it instead, unless it
+ * happens in a transaction, which may still be rolled back). A write made in
+ * a transaction invalidates the entry again when the transaction ends, so
+ * the customer as it was before the commit, which other lookups may cache
+ * meanwhile, is not served after it. Writes made outside the gateways are
+ * only seen once the entry expires.
+ *
+ * The cache keeps copies of the customers it loads and hands out fresh
+ * copies, so gateways changed by their callers never alter a cached
+ * customer. A customer loaded while an invalidation happens is not cached,
+ * since it may have been read before the write.
+ *
+ * The limits are taken from the system properties
+ * webapp.cache.customers.size (default 1000, 0 disables the cache) and
+ * webapp.cache.customers.ttlMillis (default 60000).
+ */
+public enum CustomerCache {
+	INSTANCE;
+
+	private final ReadThroughCache<Integer, CustomerRowDataGateway> cache = new ReadThroughCache<>(
+			CustomerRowDataGateway::copy,
+			Integer.getInteger("webapp.cache.customers.size", 1000),
+			Long.getLong("webapp.cache.customers.ttlMillis", 60000));
+
+	/**
+	 * Changes the limits of the cache and empties it.
+	 *
+	 * @param maxSize The maximum number of cached customers (0 disables the cache)
+	 * @param ttlMillis For how long a customer is served from the cache
+	 */
+	public void configure(int maxSize, long ttlMillis) {
+		cache.configure(maxSize, ttlMillis);
+	}
+
+	/**
+	 * Gets a customer, from the cache when it is there and still fresh, from
+	 * the loader otherwise.
+	 *
+	 * @param vat The customer's VAT number
+	 * @param loader Reads the customer from the database
+	 * @return A copy of the customer, which the caller may change
+	 * @throws PersistenceException In case the loader fails
+	 */
+	CustomerRowDataGateway get(int vat, ReadThroughCache.Loader<Integer, CustomerRowDataGateway> loader) throws PersistenceException {
+		return cache.get(vat, loader);
+	}
+
+	/**
+	 * @return Whether a fresh entry for the VAT number is cached
+	 */
+	boolean contains(int vat) {
+		return cache.contains(vat);
+	}
+
+	/**
+	 * Forgets a customer, so the next lookup reads it from the database.
+	 *
+	 * @param vat The customer's VAT number
+	 */
+	void invalidate(int vat) {
+		cache.invalidate(vat);
+		if (DataSource.INSTANCE.inTransaction())
+			// until the transaction commits, other lookups still read (and
+			// may cache) the customer as it was
+			DataSource.INSTANCE.afterTransaction(() -> cache.invalidate(vat));
+	}
+
+	/**
+	 * Writes a phone number change through to the cached customer, if it is
+	 * cached, so the next lookup needs no query.
+	 *
+	 * @param vat The customer's VAT number
+	 * @param phoneNumber The phone number the customer now has in the database
+	 */
+	void updatePhoneNumber(int vat, int phoneNumber) {
+		if (DataSource.INSTANCE.inTransaction()) {
+			invalidate(vat);
+			return;
+		}
+		cache.update(vat, customer -> {
+			customer.setPhoneNumber(phoneNumber);
+			return customer;
+		});
+	}
+
+	/**
+	 * Forgets all customers
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * @return The number of lookups served from the cache
+	 */
+	public long getHits() {
+		return cache.getHits();
+	}
+
+	/**
+	 * @return The number of lookups that went to the database
+	 */
+	public long getMisses() {
+		return cache.getMisses();
+	}
+
+	/**
+	 * @return The number of customers dropped for lack of room or because they expired
+	 */
+	public long getEvictions() {
+		return cache.getEvictions();
+	}
+
+	/**
+	 * @return The number of cached customers
+	 */
+	public int size() {
+		return cache.size();
+	}
+}
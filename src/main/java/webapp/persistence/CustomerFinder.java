@@ -21,18 +21,24 @@ public class CustomerFinder {
 			   "select * from customer where vatnumber = ?";
 	
 	/**
-	 * Gets a customer by its VAT number 
+	 * Gets a customer by its VAT number, from the customer cache when
+	 * it is there.
 	 * 
 	 * @param vat The VAT number of the customer to search for
-	 * @return The result set of the query
+	 * @return The customer
 	 * @throws PersistenceException When there is an error getting the customer
 	 * from the database.
 	 */
 	public CustomerRowDataGateway getCustomerByVATNumber (int vat) throws PersistenceException {
+		return CustomerCache.INSTANCE.get(vat, this::loadCustomerByVATNumber);
+	}
+
+	private CustomerRowDataGateway loadCustomerByVATNumber (int vat) throws PersistenceException {
 		try (PreparedStatement statement = DataSource.INSTANCE.prepare(GET_CUSTOMER_BY_VAT_NUMBER_SQL)){
 			statement.setInt(1, vat);
 			try (ResultSet rs = statement.executeQuery()) {
 				rs.next();
+				DataSource.INSTANCE.rowsRead(statement, 1);
 				return new CustomerRowDataGateway(rs);
 			}
 		} catch (SQLException e) {
@@ -40,4 +46,107 @@ public class CustomerFinder {
 		}
 	}
 
+	/**
+	 * The customer existence by VAT SQL statement
+	 */
+	private static final String EXISTS_CUSTOMER_WITH_VAT_NUMBER_SQL = 
+			   "select 1 from customer where vatnumber = ?";
+
+	/**
+	 * Checks whether there is a customer with a VAT number. 
+	 * Answered by the customer cache when it holds the customer, by probing
+	 * the VAT number index otherwise; no customer is loaded.
+	 * 
+	 * @param vat The VAT number of the customer to search for
+	 * @return Whether the customer exists
+	 * @throws PersistenceException When there is an error querying the database
+	 */
+	public boolean existsCustomerWithVATNumber (int vat) throws PersistenceException {
+		if (CustomerCache.INSTANCE.contains(vat))
+			return true;
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(EXISTS_CUSTOMER_WITH_VAT_NUMBER_SQL)){
+			statement.setInt(1, vat);
+			try (ResultSet rs = statement.executeQuery()) {
+				boolean exists = rs.next();
+				DataSource.INSTANCE.rowsRead(statement, exists ? 1 : 0);
+				return exists;
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error checking a customer by its VAT number", e);
+		}
+	}
+
+	/**
+	 * The select customer with its addresses SQL statement. The customer and
+	 * its sales aggregates come in every row; a customer without addresses
+	 * gives one row with a null address.
+	 */
+	private static final String CUSTOMER_ADDRESSES_SQL =
+			"select c.id, c.designation, c.phonenumber, c.vatnumber, " +
+					"ss.num_sales, ss.open_sales, ss.closed_sales, ss.total as sales_total, ss.last_sale_date, 'A' as kind, " +
+					"a.id as item_id, a.address, cast(null as date) as sale_date, cast(null as double) as total " +
+			"from customer c left join customersalessummary ss on ss.customer_vat = c.vatnumber " +
+					"left join address a on a.customer_vat = c.vatnumber " +
+			"where c.vatnumber = ?";
+
+	/**
+	 * The select customer profile SQL statement
+	 */
+	private static final String GET_CUSTOMER_PROFILE_SQL =
+			CUSTOMER_ADDRESSES_SQL + " order by item_id";
+
+	/**
+	 * The select customer profile with open sales SQL statement: the open
+	 * sales come as rows of kind 'S' after the addresses
+	 */
+	private static final String GET_CUSTOMER_PROFILE_WITH_OPEN_SALES_SQL =
+			CUSTOMER_ADDRESSES_SQL + " union all " +
+			"select c.id, c.designation, c.phonenumber, c.vatnumber, " +
+					"cast(null as integer), cast(null as integer), cast(null as integer), cast(null as double), cast(null as date), 'S', " +
+					"s.id, cast(null as char(100)), s.date, s.total " +
+			"from customer c join sale s on s.customer_vat = c.vatnumber " +
+			"where c.vatnumber = ? and s.status = 'O' " +
+			"order by kind, item_id";
+
+	/**
+	 * Gets a customer together with its sales aggregates, its addresses and,
+	 * optionally, its open sales, with a single query.
+	 * 
+	 * @param vat The VAT number of the customer to search for
+	 * @param withOpenSales Whether to get the customer's open sales too
+	 * @return The customer's profile
+	 * @throws PersistenceException When the customer does not exist or there
+	 * is an error querying the database
+	 */
+	public CustomerProfile getCustomerProfile (int vat, boolean withOpenSales) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(withOpenSales ? 
+				GET_CUSTOMER_PROFILE_WITH_OPEN_SALES_SQL : GET_CUSTOMER_PROFILE_SQL)){
+			statement.setInt(1, vat);
+			if (withOpenSales)
+				statement.setInt(2, vat);
+			try (ResultSet rs = statement.executeQuery()) {
+				if (!rs.next())
+					throw new RecordNotFoundException("Customer with VAT number " + vat + " does not exist");
+				long rows = 0;
+				CustomerProfile profile = new CustomerProfile(new CustomerRowDataGateway(rs),
+						new CustomerSalesSummaryRowDataGateway(vat, rs));
+				do {
+					rows++;
+					int itemId = rs.getInt("item_id");
+					if (rs.wasNull())
+						continue;
+					if ("A".equals(rs.getString("kind")))
+						profile.getAddresses().add(new AddressRowDataGateway(itemId, rs.getString("address"), vat));
+					else
+						profile.getOpenSales().add(new SaleRowDataGateway(itemId, rs.getDate("sale_date"), 
+								rs.getDouble("total"), "O", vat));
+				} while (rs.next());
+				DataSource.INSTANCE.rowsRead(statement, rows);
+				return profile;
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error getting a customer profile by its VAT number", e);
+		}
+	}
+
 }
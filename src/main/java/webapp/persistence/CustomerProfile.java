@@ -0,0 +1,45 @@
+package webapp.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A customer together with its sales aggregates, its addresses and, when
+ * asked for, its open sales, as loaded by CustomerFinder.getCustomerProfile
+ * in one query.
+ */
+public class CustomerProfile {
+
+	private final CustomerRowDataGateway customer;
+	private final CustomerSalesSummaryRowDataGateway salesSummary;
+	private final List<AddressRowDataGateway> addresses = new ArrayList<>();
+	private final List<SaleRowDataGateway> openSales = new ArrayList<>();
+
+	CustomerProfile(CustomerRowDataGateway customer, CustomerSalesSummaryRowDataGateway salesSummary) {
+		this.customer = customer;
+		this.salesSummary = salesSummary;
+	}
+
+	public CustomerRowDataGateway getCustomer() {
+		return customer;
+	}
+
+	public CustomerSalesSummaryRowDataGateway getSalesSummary() {
+		return salesSummary;
+	}
+
+	/**
+	 * @return The customer's addresses, in the order they were added
+	 */
+	public List<AddressRowDataGateway> getAddresses() {
+		return addresses;
+	}
+
+	/**
+	 * @return The customer's open sales, in the order they were made (empty
+	 * unless asked for)
+	 */
+	public List<SaleRowDataGateway> getOpenSales() {
+		return openSales;
+	}
+}
@@ -70,6 +70,13 @@ public class CustomerRowDataGateway {
 		}
 	}
 
+	/**
+	 * @return A copy of this customer
+	 */
+	CustomerRowDataGateway copy() {
+		return new CustomerRowDataGateway(id, vat, designation, phoneNumber);
+	}
+
 	private void fillAttributes(int vat, String designation, int phoneNumber) {
 		this.vat = vat;
 		this.designation = designation;
@@ -135,16 +142,58 @@ public class CustomerRowDataGateway {
 			"insert into customer (id, designation, phonenumber, vatnumber) " +
 			"values (DEFAULT, ?, ?, ?)";
 	
-	public void insert () throws PersistenceException {
-		try (PreparedStatement statement = DataSource.INSTANCE.prepare(INSERT_CUSTOMER_SQL)) {
+	/**
+	 * Inserts the customer
+	 * 
+	 * @return The id the database generated for the customer (also set in this gateway)
+	 * @throws PersistenceException When the customer cannot be inserted
+	 */
+	public int insert () throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepareGetGenKey(INSERT_CUSTOMER_SQL)) {
 			// set statement arguments
 			statement.setInt(3, vat);
 			statement.setString(1, designation);
 			statement.setInt(2, phoneNumber);
 			// executes SQL
 			statement.executeUpdate();
+			try (ResultSet rs = statement.getGeneratedKeys()) {
+				rs.next();
+				id = rs.getInt(1);
+			}
+			return id;
 		} catch (SQLException e) {
 			throw new PersistenceException ("Internal error!", e);
+		} finally {
+			CustomerCache.INSTANCE.invalidate(vat);
+		}
+	}
+
+	/**
+	 * Inserts several customers with a single JDBC batch. The caller decides
+	 * the transaction boundaries; if the batch fails, some of the customers may
+	 * have been inserted, so the transaction should be rolled back.
+	 * 
+	 * @param customers The customers to insert
+	 * @throws PersistenceException When some of the inserts fail
+	 */
+	public void insertAll (List<CustomerRowDataGateway> customers) throws PersistenceException {
+		if (customers.isEmpty())
+			return;
+		// prepared like insert's, so both share the cached statement
+		try (PreparedStatement statement = DataSource.INSTANCE.prepareGetGenKey(INSERT_CUSTOMER_SQL)) {
+			for (CustomerRowDataGateway customer : customers) {
+				statement.setInt(3, customer.vat);
+				statement.setString(1, customer.designation);
+				statement.setInt(2, customer.phoneNumber);
+				statement.addBatch();
+			}
+			// executes SQL
+			statement.executeBatch();
+		} catch (SQLException e) {
+			throw new PersistenceException ("Internal error inserting customers!", e);
+		} finally {
+			for (CustomerRowDataGateway customer : customers)
+				CustomerCache.INSTANCE.invalidate(customer.vat);
 		}
 	}
 
@@ -165,34 +214,66 @@ public class CustomerRowDataGateway {
 			statement.executeUpdate();
 		} catch (SQLException e) {
 			throw new PersistenceException("Internal error updating customer " + id + ".", e);
+		} finally {
+			CustomerCache.INSTANCE.invalidate(vat);
 		}
 	}
 	
-	private static CustomerRowDataGateway loadCustomer(ResultSet rs) throws RecordNotFoundException{
-		try {
-			CustomerRowDataGateway newCustomer = new CustomerRowDataGateway(rs.getInt("vatnumber"), rs.getString("designation") , rs.getInt("phonenumber"));
-			newCustomer.id = rs.getInt("id");
-			return newCustomer;
+	/**
+	 * The update customer phone by VAT SQL statement
+	 */
+	private static final String	UPDATE_PHONE_BY_VAT_SQL =
+			"update customer " +
+					   "set phonenumber = ? " +
+					   "where vatnumber = ?";
+	
+	/**
+	 * Updates the phone number of a customer given its VAT number, without
+	 * loading it first. The change is written through to the customer cache.
+	 * 
+	 * @param vat The customer's VAT number
+	 * @param phoneNumber The new phone number
+	 * @throws PersistenceException When the customer does not exist or the
+	 * update fails
+	 */
+	public void updatePhoneNumber (int vat, int phoneNumber) throws PersistenceException {
+		boolean updated = false;
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(UPDATE_PHONE_BY_VAT_SQL)){
+			// set statement arguments
+			statement.setInt(1, phoneNumber);
+			statement.setInt(2, vat);
+			// execute SQL
+			updated = statement.executeUpdate() > 0;
 		} catch (SQLException e) {
-			throw new RecordNotFoundException ("SaleProduct does not exist", e);
+			throw new PersistenceException("Internal error updating customer with VAT number " + vat + ".", e);
+		} finally {
+			if (updated)
+				CustomerCache.INSTANCE.updatePhoneNumber(vat, phoneNumber);
+			else
+				CustomerCache.INSTANCE.invalidate(vat);
 		}
+		if (!updated)
+			throw new RecordNotFoundException("Customer with VAT number " + vat + " does not exist");
+	}
+	
+	private static CustomerRowDataGateway loadCustomer(ResultSet rs) throws SQLException {
+		CustomerRowDataGateway newCustomer = new CustomerRowDataGateway(rs.getInt("vatnumber"), rs.getString("designation") , rs.getInt("phonenumber"));
+		newCustomer.id = rs.getInt("id");
+		return newCustomer;
 	}
 	
 	/**
-	 * The select customer by VAT SQL statement
+	 * The select all customers SQL statement
 	 */
 	private static final String GET_ALL_CUSTOMERS_SQL = 
 			   "select * from customer";
 	
 	/**
-	 * Gets a customer by its VAT number 
+	 * Gets all customers
 	 * 
-	 * @param vat The VAT number of the customer to search for
-	 * @return The result set of the query
-	 * @throws PersistenceException When there is an error getting the customer
-	 * from the database.
+	 * @return The customers, in no particular order
+	 * @throws PersistenceException When there is an error getting the customers
 	 */
-	
 	public List<CustomerRowDataGateway> getAllCustomers () throws PersistenceException {
 		List<CustomerRowDataGateway> customers = new ArrayList<CustomerRowDataGateway>();
 		try (PreparedStatement statement = DataSource.INSTANCE.prepare(GET_ALL_CUSTOMERS_SQL)){
@@ -200,11 +281,76 @@ public class CustomerRowDataGateway {
 				while (rs.next()) {
 					customers.add(loadCustomer(rs));
 				}
-				rs.next();
+				DataSource.INSTANCE.rowsRead(statement, customers.size());
+				return customers;
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error getting all customers", e);
+		}
+	}
+
+	/**
+	 * The select a page of customers SQL statement
+	 */
+	private static final String GET_CUSTOMERS_PAGE_SQL = 
+			   "select * from customer where id > ? order by id fetch first ? rows only";
+	
+	/**
+	 * Gets a page of customers, ordered by id. The page starts right after the
+	 * last customer of the previous one (a range on the primary key), so every
+	 * page costs the same whatever its depth.
+	 * 
+	 * @param afterId The id of the last customer of the previous page (0 for the first page)
+	 * @param limit The maximum number of customers to get
+	 * @return The customers with ids above afterId, in id order
+	 * @throws PersistenceException When there is an error getting the customers
+	 */
+	public List<CustomerRowDataGateway> getCustomersPage (int afterId, int limit) throws PersistenceException {
+		List<CustomerRowDataGateway> customers = new ArrayList<CustomerRowDataGateway>();
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(GET_CUSTOMERS_PAGE_SQL)){
+			statement.setInt(1, afterId);
+			statement.setInt(2, limit);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					customers.add(loadCustomer(rs));
+				}
+				DataSource.INSTANCE.rowsRead(statement, customers.size());
+				return customers;
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error getting a page of customers", e);
+		}
+	}
+
+	/**
+	 * The select the page of customers before an id SQL statement
+	 */
+	private static final String GET_CUSTOMERS_PAGE_BEFORE_SQL = 
+			   "select * from customer where id < ? order by id desc fetch first ? rows only";
+	
+	/**
+	 * Gets the page of customers that comes before a given one, going back
+	 * from its first customer with a range on the primary key like getCustomersPage.
+	 * 
+	 * @param beforeId The id of the first customer of the following page
+	 * @param limit The maximum number of customers to get
+	 * @return The customers with ids below beforeId, closest first (in descending id order)
+	 * @throws PersistenceException When there is an error getting the customers
+	 */
+	public List<CustomerRowDataGateway> getCustomersPageBefore (int beforeId, int limit) throws PersistenceException {
+		List<CustomerRowDataGateway> customers = new ArrayList<CustomerRowDataGateway>();
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(GET_CUSTOMERS_PAGE_BEFORE_SQL)){
+			statement.setInt(1, beforeId);
+			statement.setInt(2, limit);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					customers.add(loadCustomer(rs));
+				}
+				DataSource.INSTANCE.rowsRead(statement, customers.size());
 				return customers;
 			}
 		} catch (SQLException e) {
-			throw new PersistenceException("Internal error getting a customer by its VAT number", e);
+			throw new PersistenceException("Internal error getting a page of customers", e);
 		}
 	}
 
@@ -225,6 +371,8 @@ public class CustomerRowDataGateway {
 			statement.executeUpdate();
 		} catch (SQLException e) {
 			throw new PersistenceException("Internal error updating customer " + id + ".", e);
+		} finally {
+			CustomerCache.INSTANCE.invalidate(vat);
 		}
 	}
 	
@@ -0,0 +1,128 @@
+package webapp.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-through cache of each customer's list of sales, keyed by the
+ * customer's VAT number, in front of SaleRowDataGateway.getAllSales(int).
+ * It works like the customer cache: bounded, least recently used first,
+ * with a time to live, and it hands out copies.
+ *
+ * A sale inserted outside a transaction is appended to the cached list of
+ * its customer, so the list can be shown right after without a query. The
+ * other sale writes invalidate the lists they touch, again at the end of
+ * their transaction when they are made in one (as the customer cache does).
+ *
+ * The limits are taken from the system properties
+ * webapp.cache.sales.size (the number of customers whose sales are cached,
+ * default 1000, 0 disables the cache) and webapp.cache.sales.ttlMillis
+ * (default 60000).
+ */
+public enum CustomerSalesCache {
+	INSTANCE;
+
+	private final ReadThroughCache<Integer, List<SaleRowDataGateway>> cache = new ReadThroughCache<>(
+			CustomerSalesCache::copy,
+			Integer.getInteger("webapp.cache.sales.size", 1000),
+			Long.getLong("webapp.cache.sales.ttlMillis", 60000));
+
+	private static List<SaleRowDataGateway> copy(List<SaleRowDataGateway> sales) {
+		List<SaleRowDataGateway> copy = new ArrayList<>(sales.size() + 1);
+		for (SaleRowDataGateway sale : sales)
+			copy.add(sale.copy());
+		return copy;
+	}
+
+	/**
+	 * Changes the limits of the cache and empties it.
+	 *
+	 * @param maxSize The maximum number of customers whose sales are cached (0 disables the cache)
+	 * @param ttlMillis For how long a list of sales is served from the cache
+	 */
+	public void configure(int maxSize, long ttlMillis) {
+		cache.configure(maxSize, ttlMillis);
+	}
+
+	/**
+	 * Gets the sales of a customer, from the cache when they are there and
+	 * still fresh, from the loader otherwise.
+	 *
+	 * @param vat The customer's VAT number
+	 * @param loader Reads the sales from the database
+	 * @return A copy of the sales, which the caller may change
+	 * @throws PersistenceException In case the loader fails
+	 */
+	List<SaleRowDataGateway> get(int vat, ReadThroughCache.Loader<Integer, List<SaleRowDataGateway>> loader) throws PersistenceException {
+		return cache.get(vat, loader);
+	}
+
+	/**
+	 * Adds a sale just inserted to its customer's cached list, if the list
+	 * is cached.
+	 *
+	 * @param sale The inserted sale, with its generated id
+	 */
+	void added(SaleRowDataGateway sale) {
+		if (DataSource.INSTANCE.inTransaction()) {
+			invalidate(sale.getCustomerVat());
+			return;
+		}
+		SaleRowDataGateway copy = sale.copy();
+		cache.update(sale.getCustomerVat(), sales -> {
+			sales.add(copy);
+			return sales;
+		});
+	}
+
+	/**
+	 * Forgets the sales of a customer, so the next lookup reads them from the database.
+	 *
+	 * @param vat The customer's VAT number
+	 */
+	void invalidate(int vat) {
+		cache.invalidate(vat);
+		if (DataSource.INSTANCE.inTransaction())
+			// until the transaction commits, other lookups still read (and
+			// may cache) the sales as they were
+			DataSource.INSTANCE.afterTransaction(() -> cache.invalidate(vat));
+	}
+
+	/**
+	 * Forgets the sales of all customers, after a write that may touch any of
+	 * them (again at the end of the transaction, if in one)
+	 */
+	void invalidateAll() {
+		cache.clear();
+		if (DataSource.INSTANCE.inTransaction())
+			DataSource.INSTANCE.afterTransaction(cache::clear);
+	}
+
+	/**
+	 * Forgets the sales of all customers
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * @return The number of lookups served from the cache
+	 */
+	public long getHits() {
+		return cache.getHits();
+	}
+
+	/**
+	 * @return The number of lookups that went to the database
+	 */
+	public long getMisses() {
+		return cache.getMisses();
+	}
+
+	/**
+	 * @return The number of lists dropped for lack of room or because they expired
+	 */
+	public long getEvictions() {
+		return cache.getEvictions();
+	}
+}
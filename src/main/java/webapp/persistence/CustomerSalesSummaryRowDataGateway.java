@@ -0,0 +1,129 @@
+package webapp.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The sales aggregates of a customer: how many sales it has (open and
+ * closed), their total and the date of the last one.
+ *
+ * The aggregates are a materialised row of the CUSTOMERSALESSUMMARY table,
+ * which triggers on the SALE table adjust in the same statement that
+ * inserts, updates or removes a sale (whether through SaleRowDataGateway or
+ * not), so they never need to be computed from the sales. Hence this
+ * gateway only reads them, and removes them together with their customer.
+ */
+public class CustomerSalesSummaryRowDataGateway {
+
+	private int customerVat;
+
+	private int numSales;
+
+	private int openSales;
+
+	private int closedSales;
+
+	private double total;
+
+	/**
+	 * The date of the customer's last sale (null when it has no sales)
+	 */
+	private java.sql.Date lastSaleDate;
+
+	public CustomerSalesSummaryRowDataGateway() {
+	}
+
+	/**
+	 * Loads the aggregates from the num_sales, open_sales, closed_sales,
+	 * sales_total and last_sale_date columns of the current row, which are
+	 * all null for a customer without sales.
+	 */
+	CustomerSalesSummaryRowDataGateway(int customerVat, ResultSet rs) throws SQLException {
+		this.customerVat = customerVat;
+		this.numSales = rs.getInt("num_sales");
+		this.openSales = rs.getInt("open_sales");
+		this.closedSales = rs.getInt("closed_sales");
+		this.total = rs.getDouble("sales_total");
+		this.lastSaleDate = rs.getDate("last_sale_date");
+	}
+
+	public int getCustomerVat() {
+		return customerVat;
+	}
+
+	public int getNumSales() {
+		return numSales;
+	}
+
+	public int getOpenSales() {
+		return openSales;
+	}
+
+	public int getClosedSales() {
+		return closedSales;
+	}
+
+	public double getTotal() {
+		return total;
+	}
+
+	public java.sql.Date getLastSaleDate() {
+		return lastSaleDate;
+	}
+
+	/**
+	 * The select the aggregates of a customer SQL statement
+	 */
+	private static final String GET_SUMMARY_BY_CUSTOMER_VAT_SQL =
+			"select num_sales, open_sales, closed_sales, total as sales_total, last_sale_date " +
+				"from customersalessummary " +
+				"where customer_vat = ?";
+
+	/**
+	 * Gets the sales aggregates of a customer with a single-row lookup
+	 *
+	 * @param vat The customer's VAT number
+	 * @return The aggregates (all zero for a customer without sales)
+	 * @throws PersistenceException When there is an error querying the database
+	 */
+	public CustomerSalesSummaryRowDataGateway getByCustomerVat(int vat) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(GET_SUMMARY_BY_CUSTOMER_VAT_SQL)) {
+			statement.setInt(1, vat);
+			try (ResultSet rs = statement.executeQuery()) {
+				if (!rs.next()) {
+					CustomerSalesSummaryRowDataGateway none = new CustomerSalesSummaryRowDataGateway();
+					none.customerVat = vat;
+					return none;
+				}
+				DataSource.INSTANCE.rowsRead(statement, 1);
+				return new CustomerSalesSummaryRowDataGateway(vat, rs);
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error getting the sales summary of customer " + vat, e);
+		}
+	}
+
+	/**
+	 * The delete the aggregates of a customer SQL statement
+	 */
+	private static final String REMOVE_SUMMARY_BY_CUSTOMER_VAT_SQL =
+			"delete from customersalessummary " +
+				"where customer_vat = ?";
+
+	/**
+	 * Removes the sales aggregates of a customer. Done before its sales are
+	 * removed, the triggers then find no aggregates to adjust.
+	 *
+	 * @param vat The customer's VAT number
+	 * @throws PersistenceException When there is an error removing the aggregates
+	 */
+	public void removeByCustomerVat(int vat) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(REMOVE_SUMMARY_BY_CUSTOMER_VAT_SQL)) {
+			statement.setInt(1, vat);
+			statement.executeUpdate();
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error removing the sales summary of customer " + vat, e);
+		}
+	}
+}
@@ -1,25 +1,62 @@
 package webapp.persistence;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * The application data source.
+ * 
+ * Connections come from a bounded pool. The first statement a thread prepares
+ * borrows a connection that stays bound to that thread (and so to its 
+ * transaction) until release() is called, which the page controllers do at 
+ * the end of each request.
+ * 
+ * The executions of the statements prepared through it are timed and
+ * counted, by SQL text, in the application's metrics, and the slow ones are
+ * logged with their parameters (see setSlowQueryThreshold).
+ */
 public enum DataSource {
 	INSTANCE;
 	
 	/**
-	 * A connection to the database
+	 * The pool of connections to the database
 	 */ 
-	private Connection connection;
+	private volatile ConnectionPool pool;
+
+	/**
+	 * The connection bound to each thread
+	 */
+	private final ThreadLocal<PooledConnection> current = new ThreadLocal<>();
+
+	/**
+	 * The actions to run when the transaction of each thread ends
+	 */
+	private final ThreadLocal<List<Runnable>> afterTransaction = new ThreadLocal<>();
+
+	/**
+	 * Set on the threads that timed out waiting for a connection, until they
+	 * release it
+	 */
+	private final ThreadLocal<Boolean> connectionTimedOut = new ThreadLocal<>();
+
+	/**
+	 * How long (in nanoseconds) a statement may take to execute and fetch its
+	 * rows before it is logged as slow; negative disables the slow query log.
+	 * Set with -Dwebapp.db.slowQueryMillis (500 by default).
+	 */
+	private volatile long slowQueryThresholdNanos =
+			TimeUnit.MILLISECONDS.toNanos(Long.getLong("webapp.db.slowQueryMillis", 500));
 
 	
 	// 1. Connections
 	
 	/**
-	 * Constructs a database connection given the connection url, the username, and its password
-	 * for the database engine.
+	 * Constructs a database connection pool given the connection url, the username, 
+	 * and its password for the database engine, using the default pool configuration.
 	 * 
 	 * @param url The database connection URL 
 	 * @param username The username to login into the database 
@@ -28,8 +65,27 @@ public enum DataSource {
 	 * @throws PersistenceException In case the connection fails to establish
 	 */
 	public DataSource connect (String url, String username, String password) throws PersistenceException {
+		return connect(url, username, password, ConnectionPoolConfig.DEFAULT);
+	}
+
+	/**
+	 * Constructs a database connection pool given the connection url, the username, 
+	 * its password for the database engine and the pool configuration.
+	 * 
+	 * @param url The database connection URL 
+	 * @param username The username to login into the database 
+	 * @param password The user's password 
+	 * @param config The pool sizes and timeouts
+	 * @return The data source.
+	 * @throws PersistenceException In case the connection fails to establish
+	 */
+	public synchronized DataSource connect (String url, String username, String password, 
+			ConnectionPoolConfig config) throws PersistenceException {
 		try {
-			connection = DriverManager.getConnection (url, username, password);
+			ConnectionPool newPool = new ConnectionPool(url, username, password, config);
+			if (pool != null)
+				pool.close();
+			pool = newPool;
 			return INSTANCE;
 		} catch (SQLException e) {
 			throw new PersistenceException("Cannot connect to database", e);
@@ -37,28 +93,72 @@ public enum DataSource {
 	}
 	
 	/**
-	 * @return The current database connection 
+	 * @return The database connection bound to the current thread, borrowing 
+	 * one from the pool if the thread has none. 
+	 * @throws PersistenceException In case no connection is available
 	 */
-	public Connection getConnection () {
-		return connection;
+	public Connection getConnection () throws PersistenceException {
+		return bound().getConnection();
 	}
 
 	/**
-	 * Close the database connection
+	 * Returns the connection bound to the current thread (if any) to the pool.
+	 * An unfinished transaction is rolled back.
 	 */
-	public void close () {
-		try {
-			connection.close();
-		} catch (SQLException e) {
-			// nothing that we can do about it...
+	public void release () {
+		PooledConnection pc = current.get();
+		if (pc != null) {
+			current.remove();
+			pc.getOwner().release(pc);
 		}
+		connectionTimedOut.remove();
+		endTransaction();
+	}
+
+	/**
+	 * Whether the current thread timed out waiting for a connection since it
+	 * last released one: the pool is saturated, so the request that failed
+	 * may be retried later.
+	 */
+	public boolean connectionTimedOut () {
+		return connectionTimedOut.get() != null;
+	}
+
+	/**
+	 * Close the database connections
+	 */
+	public synchronized void close () {
+		release();
+		if (pool != null) {
+			pool.close();
+			pool = null;
+		}
+	}
+
+	private PooledConnection bound () throws PersistenceException {
+		PooledConnection pc = current.get();
+		if (pc == null) {
+			ConnectionPool p = pool;
+			if (p == null)
+				throw new PersistenceException("Database not connected");
+			try {
+				pc = p.borrow();
+			} catch (ConnectionTimeoutException e) {
+				connectionTimedOut.set(Boolean.TRUE);
+				throw e;
+			}
+			current.set(pc);
+		}
+		return pc;
 	}
 	
 	
 	// 2. Prepare statements
 
 	/**
-	 * Prepare an SQL statement from an SQL string
+	 * Prepare an SQL statement from an SQL string. Statements are cached by the
+	 * connection, so closing the returned statement makes it available for reuse
+	 * instead of discarding it.
 	 * 
 	 * @param sql The SQL text to prepare the command
 	 * @return The prepared statement for the SQL text
@@ -67,7 +167,7 @@ public enum DataSource {
 	 */
 	public PreparedStatement prepare (String sql) throws PersistenceException {
 		try {
-			return connection.prepareStatement(sql);
+			return bound().prepare(sql, false);
 		} catch (SQLException e) {
 			throw new PersistenceException("Error preparing comment", e);
 		} 
@@ -83,7 +183,94 @@ public enum DataSource {
 	 * encounters an error.
 	 */
 	public PreparedStatement prepareGetGenKey (String sql) throws SQLException {
-		return connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS); 
+		try {
+			return bound().prepare(sql, true);
+		} catch (PersistenceException e) {
+			throw new SQLException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Prepare an SQL statement from an SQL string and informs the underlying JDBC 
+	 * layer to return the given columns of the inserted rows as generated keys,
+	 * so an insert can read back values the database derived for them.
+	 * 
+	 * @param sql The SQL text to prepare the command
+	 * @param columnNames The names of the columns to return
+	 * @return The prepared statement for the SQL text
+	 * @throws SQLException In case the prepare statement encounters an error.
+	 */
+	public PreparedStatement prepareGetGenKey (String sql, String... columnNames) throws SQLException {
+		try {
+			return bound().prepare(sql, columnNames);
+		} catch (PersistenceException e) {
+			throw new SQLException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Tells the statement's metrics and slow query log how many rows were
+	 * read from the result of its last query. The result sets are not
+	 * wrapped, so the rows a query goes through are only counted this way.
+	 *
+	 * @param statement A statement prepared by this data source
+	 * @param rows The number of rows read
+	 */
+	public void rowsRead (PreparedStatement statement, long rows) {
+		TimedStatement.rowsRead(statement, rows);
+	}
+
+	
+	/**
+	 * @return How many prepares were served by the statement caches
+	 */
+	public long getStatementCacheHits () {
+		ConnectionPool p = pool;
+		return p == null ? 0 : p.getStatementCacheHits();
+	}
+
+	/**
+	 * @return How many prepares had to be parsed by the database
+	 */
+	public long getStatementCacheMisses () {
+		ConnectionPool p = pool;
+		return p == null ? 0 : p.getStatementCacheMisses();
+	}
+
+	/**
+	 * @return How many statements were dropped from the statement caches
+	 */
+	public long getStatementCacheEvictions () {
+		ConnectionPool p = pool;
+		return p == null ? 0 : p.getStatementCacheEvictions();
+	}
+		
+	
+	/**
+	 * Sets how long a statement may take to execute and fetch its rows before
+	 * it is logged (to the webapp.persistence.slowquery logger) with its bind
+	 * parameters and the gateway method that ran it
+	 * 
+	 * @param millis The threshold in milliseconds (0 logs every statement,
+	 * a negative value none)
+	 */
+	public void setSlowQueryThreshold (long millis) {
+		slowQueryThresholdNanos = millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	/**
+	 * @return The slow query threshold in milliseconds (-1 when disabled)
+	 */
+	public long getSlowQueryThreshold () {
+		long nanos = slowQueryThresholdNanos;
+		return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * @return The slow query threshold in nanoseconds (negative when disabled)
+	 */
+	long getSlowQueryThresholdNanos () {
+		return slowQueryThresholdNanos;
 	}
 		
 	
@@ -96,7 +283,7 @@ public enum DataSource {
 	 */
 	public void beginTransaction() throws PersistenceException {
 		try {
-			connection.setAutoCommit(false);
+			getConnection().setAutoCommit(false);
 		} catch (SQLException e) {
 			throw new PersistenceException("Error starting DB transaction", e);
 		}
@@ -109,10 +296,11 @@ public enum DataSource {
 	 */
 	public void commit() throws PersistenceException {
 		try {
-			connection.commit();
+			getConnection().commit();
 		} catch (SQLException e) {
 			throw new PersistenceException("Error on commit", e);
 		}
+		endTransaction();
 		startAutoCommit();
 	}
 
@@ -123,13 +311,59 @@ public enum DataSource {
 	 */
 	public void rollback() throws PersistenceException {
 		try {
-			connection.rollback();
+			getConnection().rollback();
 		} catch (SQLException e) {
 			throw new PersistenceException("Error on rollback!", e);
+		} finally {
+			endTransaction();
 		}
 		startAutoCommit();
 	}
 
+	/**
+	 * @return Whether the current thread is in a transaction (begun and not yet
+	 * committed or rolled back)
+	 */
+	public boolean inTransaction() {
+		PooledConnection pc = current.get();
+		try {
+			return pc != null && !pc.getConnection().getAutoCommit();
+		} catch (SQLException e) {
+			// cannot tell: assume the worst
+			return true;
+		}
+	}
+
+	/**
+	 * Runs an action once the current thread's transaction is committed or
+	 * rolled back (or its connection released), or right away when it is
+	 * not in a transaction. The caches use it to forget the rows a
+	 * transaction writes once the writes are visible to other connections.
+	 *
+	 * @param action What to run
+	 */
+	public void afterTransaction(Runnable action) {
+		if (!inTransaction()) {
+			action.run();
+			return;
+		}
+		List<Runnable> actions = afterTransaction.get();
+		if (actions == null) {
+			actions = new ArrayList<>();
+			afterTransaction.set(actions);
+		}
+		actions.add(action);
+	}
+
+	private void endTransaction() {
+		List<Runnable> actions = afterTransaction.get();
+		if (actions != null) {
+			afterTransaction.remove();
+			for (Runnable action : actions)
+				action.run();
+		}
+	}
+
 	/**
 	 * Disables commitment control
 	 * 
@@ -137,7 +371,7 @@ public enum DataSource {
 	 */
 	private void startAutoCommit() throws PersistenceException {
 		try {
-			connection.setAutoCommit(true);
+			getConnection().setAutoCommit(true);
 		} catch (SQLException e) {
 			throw new PersistenceException("Error starting auto commit", e);
 		}
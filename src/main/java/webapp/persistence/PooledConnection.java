@@ -0,0 +1,124 @@
+package webapp.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A physical database connection owned by the connection pool.
+ *
+ * While borrowed it is bound to a single thread (see DataSource), so it
+ * is not thread safe.
+ *
+ */
+class PooledConnection {
+
+	/**
+	 * The pool the connection belongs to
+	 */
+	private final ConnectionPool owner;
+
+	/**
+	 * The physical JDBC connection
+	 */
+	private final Connection connection;
+
+	/**
+	 * The prepared statements of this connection
+	 */
+	private final StatementCache statements;
+
+	/**
+	 * When (System.nanoTime) the connection was last returned to the pool
+	 */
+	private volatile long idleSince;
+
+	PooledConnection(ConnectionPool owner, Connection connection, int statementCacheSize,
+			StatementCache.Stats statementCacheStats) {
+		this.owner = owner;
+		this.connection = connection;
+		this.statements = new StatementCache(connection, statementCacheSize, statementCacheStats);
+		this.idleSince = System.nanoTime();
+	}
+
+	ConnectionPool getOwner() {
+		return owner;
+	}
+
+	Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Prepares a statement, reusing the one cached for the same SQL text
+	 * if there is one.
+	 *
+	 * @param sql The SQL text to prepare the command
+	 * @param returnGeneratedKeys Whether to get the keys generated by the database
+	 * @return The prepared statement for the SQL text
+	 * @throws SQLException In case the statement cannot be prepared
+	 */
+	PreparedStatement prepare(String sql, boolean returnGeneratedKeys) throws SQLException {
+		return statements.prepare(sql, returnGeneratedKeys);
+	}
+
+	/**
+	 * Prepares a statement that returns the given columns of the rows it
+	 * inserts, reusing the one cached for the same SQL text if there is one.
+	 *
+	 * @param sql The SQL text to prepare the command
+	 * @param keyColumns The columns to return as generated keys
+	 * @return The prepared statement for the SQL text
+	 * @throws SQLException In case the statement cannot be prepared
+	 */
+	PreparedStatement prepare(String sql, String[] keyColumns) throws SQLException {
+		return statements.prepare(sql, keyColumns);
+	}
+
+	long getIdleSince() {
+		return idleSince;
+	}
+
+	void markIdle() {
+		idleSince = System.nanoTime();
+	}
+
+	/**
+	 * Checks whether the connection is still usable
+	 *
+	 * @param timeoutSeconds How long the check may take
+	 * @return Whether the connection is alive
+	 */
+	boolean isValid(int timeoutSeconds) {
+		try {
+			return !connection.isClosed() && connection.isValid(timeoutSeconds);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Puts the connection back in auto commit mode, rolling back any
+	 * transaction left open by its last user.
+	 *
+	 * @throws SQLException In case the connection cannot be reset
+	 */
+	void reset() throws SQLException {
+		if (!connection.getAutoCommit()) {
+			connection.rollback();
+			connection.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Closes the physical connection
+	 */
+	void close() {
+		statements.close();
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			// nothing that we can do about it...
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package webapp.persistence;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * The workings of the gateway caches: a bounded, least recently used map
+ * whose entries also expire after a time to live, filled on a miss by a
+ * loader that reads the database.
+ *
+ * Values are mutable gateways, so the cache keeps its own copies and hands
+ * out fresh ones. A cached copy is never changed (a write-through replaces
+ * it with a changed copy), so the copies are made outside the lock and
+ * lookups do not wait for each other's copying. A value loaded while its key
+ * is invalidated (or written through, or the cache cleared) is not cached,
+ * since it may have been read before the write; the loads of other keys are
+ * not affected.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the cached values
+ */
+class ReadThroughCache<K, V> {
+
+	/**
+	 * Loads a value from the database on a cache miss
+	 */
+	@FunctionalInterface
+	interface Loader<K, V> {
+		V load(K key) throws PersistenceException;
+	}
+
+	private class Cached {
+		final V value;
+		final long expiresAt;
+
+		Cached(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final UnaryOperator<V> copier;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * The loads of a key in progress
+	 */
+	private static class Loading {
+		/**
+		 * Counts the invalidations of the key since its first load in
+		 * progress started
+		 */
+		long version;
+		int loads;
+	}
+
+	private final Map<K, Cached> entries = new LinkedHashMap<K, Cached>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, Cached> eldest) {
+			if (size() <= maxSize)
+				return false;
+			evictions.increment();
+			return true;
+		}
+	};
+
+	private int maxSize;
+	private long ttlNanos;
+
+	/**
+	 * The keys being loaded, so a load can tell whether its key was
+	 * invalidated while it was reading the database
+	 */
+	private final Map<K, Loading> loading = new HashMap<>();
+
+	/**
+	 * @param copier Makes an independent copy of a value
+	 * @param maxSize The maximum number of cached values (0 disables the cache)
+	 * @param ttlMillis For how long a value is served from the cache
+	 */
+	ReadThroughCache(UnaryOperator<V> copier, int maxSize, long ttlMillis) {
+		this.copier = copier;
+		configure(maxSize, ttlMillis);
+	}
+
+	/**
+	 * Changes the limits of the cache and empties it.
+	 *
+	 * @param maxSize The maximum number of cached values (0 disables the cache)
+	 * @param ttlMillis For how long a value is served from the cache
+	 */
+	synchronized void configure(int maxSize, long ttlMillis) {
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlMillis * 1000000;
+		clear();
+	}
+
+	/**
+	 * Gets a value, from the cache when it is there and still fresh, from
+	 * the loader otherwise.
+	 *
+	 * @param key The key of the value
+	 * @param loader Reads the value from the database
+	 * @return A copy of the value, which the caller may change
+	 * @throws PersistenceException In case the loader fails
+	 */
+	V get(K key, Loader<K, V> loader) throws PersistenceException {
+		Cached entry;
+		Loading load = null;
+		long version = 0;
+		synchronized (this) {
+			entry = fresh(key);
+			if (entry != null)
+				hits.increment();
+			else {
+				misses.increment();
+				if (maxSize > 0) {
+					load = loading.computeIfAbsent(key, k -> new Loading());
+					load.loads++;
+					version = load.version;
+				}
+			}
+		}
+		if (entry != null)
+			return copier.apply(entry.value);
+		if (load == null)
+			return loader.load(key);
+		V value = null;
+		try {
+			value = loader.load(key);
+			return value;
+		} finally {
+			V copy = value == null ? null : copier.apply(value);
+			synchronized (this) {
+				if (copy != null && load.version == version)
+					entries.put(key, new Cached(copy, System.nanoTime() + ttlNanos));
+				if (--load.loads == 0)
+					loading.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * @return Whether a fresh value for the key is cached
+	 */
+	synchronized boolean contains(K key) {
+		return fresh(key) != null;
+	}
+
+	/**
+	 * @return The entry of the key, unless it is missing or expired
+	 * (expired entries are removed)
+	 */
+	private Cached fresh(K key) {
+		Cached entry = entries.get(key);
+		if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+			entries.remove(key);
+			evictions.increment();
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Forgets a value, so the next lookup reads it from the database.
+	 */
+	synchronized void invalidate(K key) {
+		invalidateLoads(key);
+		entries.remove(key);
+	}
+
+	/**
+	 * Writes a change made to the database through to the cached value, if
+	 * there is one, so the next lookup needs no query. The entry keeps its
+	 * expiry time.
+	 *
+	 * @param key The key of the changed value
+	 * @param change Applies the change to (a copy of) the cached value
+	 */
+	synchronized void update(K key, UnaryOperator<V> change) {
+		invalidateLoads(key);
+		Cached entry = fresh(key);
+		if (entry != null)
+			entries.put(key, new Cached(change.apply(copier.apply(entry.value)), entry.expiresAt));
+	}
+
+	/**
+	 * Forgets all values
+	 */
+	synchronized void clear() {
+		for (Loading load : loading.values())
+			load.version++;
+		entries.clear();
+	}
+
+	/**
+	 * Keeps the loads of the key in progress from caching what they read
+	 */
+	private void invalidateLoads(K key) {
+		Loading load = loading.get(key);
+		if (load != null)
+			load.version++;
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+
+	long getEvictions() {
+		return evictions.sum();
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+}
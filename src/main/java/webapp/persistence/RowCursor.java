@@ -0,0 +1,134 @@
+package webapp.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * A forward-only iteration over the rows of a query. Rows are read from the
+ * result set one at a time, as they are asked for, so only the current row
+ * is held in memory whatever the size of the result.
+ *
+ * The cursor keeps its statement open until it is closed (or the result
+ * is exhausted), so it must be consumed while the thread still holds its
+ * database connection. Errors reading a row are reported as
+ * IllegalStateException, since an iterator cannot throw checked exceptions.
+ *
+ * @param <T> The type of the objects the rows are turned into
+ */
+public class RowCursor<T> implements Iterator<T>, AutoCloseable {
+
+	/**
+	 * Turns the current row of a result set into an object
+	 */
+	@FunctionalInterface
+	public interface RowMapper<T> {
+		T map(ResultSet rs) throws SQLException;
+	}
+
+	private final PreparedStatement statement;
+	private final ResultSet rs;
+	private final RowMapper<T> mapper;
+
+	/**
+	 * Whether the result set is positioned on a row not yet returned
+	 */
+	private boolean ready;
+	private boolean closed;
+
+	/**
+	 * The rows returned so far
+	 */
+	private long rows;
+
+	/**
+	 * Executes the query of a prepared statement (with its parameters already
+	 * set) and iterates over its rows. The cursor owns the statement from now
+	 * on and closes it when it is closed.
+	 *
+	 * @param statement The query to execute
+	 * @param fetchSize The number of rows the driver should fetch at a time
+	 * @param mapper Turns each row into an object
+	 * @throws PersistenceException In case the query fails (the statement is closed then)
+	 */
+	RowCursor(PreparedStatement statement, int fetchSize, RowMapper<T> mapper) throws PersistenceException {
+		try {
+			statement.setFetchSize(fetchSize);
+			this.rs = statement.executeQuery();
+		} catch (SQLException e) {
+			try {
+				statement.close();
+			} catch (SQLException e1) {
+				e.addSuppressed(e1);
+			}
+			throw new PersistenceException("Internal error executing query", e);
+		}
+		this.statement = statement;
+		this.mapper = mapper;
+	}
+
+	private RowCursor(RowCursor<?> source, RowMapper<T> mapper) {
+		this.statement = source.statement;
+		this.rs = source.rs;
+		this.mapper = mapper;
+	}
+
+	/**
+	 * @param f The conversion of each object of this cursor
+	 * @return A cursor over the same rows, converted by f. Use it instead of
+	 * this one: advancing or closing either of them affects both.
+	 */
+	public <R> RowCursor<R> map(Function<? super T, ? extends R> f) {
+		return new RowCursor<>(this, rs -> f.apply(mapper.map(rs)));
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed)
+			return false;
+		if (!ready) {
+			try {
+				ready = rs.next();
+			} catch (SQLException e) {
+				throw new IllegalStateException("Internal error reading the next row", e);
+			}
+			if (!ready)
+				close();
+		}
+		return ready;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		ready = false;
+		rows++;
+		try {
+			return mapper.map(rs);
+		} catch (SQLException e) {
+			throw new IllegalStateException("Internal error reading a row", e);
+		}
+	}
+
+	/**
+	 * Closes the result set and gives the statement back. Closing a
+	 * closed cursor does nothing.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		DataSource.INSTANCE.rowsRead(statement, rows);
+		try {
+			rs.close();
+			statement.close();
+		} catch (SQLException e) {
+			// the statement is discarded with its connection anyway
+		}
+	}
+}
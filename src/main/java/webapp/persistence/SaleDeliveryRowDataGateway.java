@@ -95,21 +95,68 @@ public class SaleDeliveryRowDataGateway {
 	
 	// 3. interaction with the repository (a memory map in this simple example)
 
-	public void insert() throws PersistenceException {
-		try (PreparedStatement statement = DataSource.INSTANCE.prepare(INSERT_SALEDELIVERY_SQL)){
+	/**
+	 * Stores the delivery
+	 * 
+	 * @return The id the database generated for the delivery (also set in this gateway)
+	 */
+	public int insert() throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepareGetGenKey(INSERT_SALEDELIVERY_SQL)){
 			// set statement arguments
 			statement.setInt(1, sale_id);
 			statement.setInt(2, customer_vat);
 			statement.setInt(3, addr_id);
 			// executes SQL
 			statement.executeUpdate();
-			
-			
+			try (ResultSet rs = statement.getGeneratedKeys()) {
+				rs.next();
+				id = rs.getInt(1);
+				return id;
+			}
 		}  catch (SQLException e){
 			throw new PersistenceException("Internal error!", e);
 		}
 	}	
 	
+	/**
+	 * The insert delivery of a sale SQL statement, which takes the customer
+	 * from the sale
+	 */
+	
+	private static final String INSERT_SALEDELIVERY_OF_SALE_SQL = 
+			"insert into saledelivery (sale_id, customer_vat, address_id) " +
+				"select id, customer_vat, ? " +
+				"from sale " +
+				"where id = ?";
+	
+	/**
+	 * Stores a delivery of a sale in a single statement, in which the database
+	 * finds the sale's customer, so the sale need not be read first.
+	 * 
+	 * @param sale_id The sale's id
+	 * @param addr_id The id of the address to deliver to
+	 * @return The stored delivery, with its generated id and the sale's customer
+	 * @throws RecordNotFoundException When there is no sale with the id
+	 * @throws PersistenceException When there is an error storing the delivery
+	 */
+	public SaleDeliveryRowDataGateway insertDeliveryOfSale(int sale_id, int addr_id) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepareGetGenKey(INSERT_SALEDELIVERY_OF_SALE_SQL,
+				"ID", "CUSTOMER_VAT")) {
+			statement.setInt(1, addr_id);
+			statement.setInt(2, sale_id);
+			if (statement.executeUpdate() == 0)
+				throw new RecordNotFoundException("Sale " + sale_id + " does not exist");
+			try (ResultSet rs = statement.getGeneratedKeys()) {
+				rs.next();
+				SaleDeliveryRowDataGateway delivery = new SaleDeliveryRowDataGateway(sale_id, rs.getInt(2), addr_id);
+				delivery.id = rs.getInt(1);
+				return delivery;
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error adding a delivery of sale " + sale_id, e);
+		}
+	}
+	
 	/**
 	 * The select delivery by customer id SQL statement
 	 */
@@ -129,6 +176,7 @@ public class SaleDeliveryRowDataGateway {
 				while(rs.next()) {
 					list.add(loadSaleDelivery(rs));
 				}
+				DataSource.INSTANCE.rowsRead(statement, list.size());
 				
 				return list;
 			}
@@ -137,6 +185,30 @@ public class SaleDeliveryRowDataGateway {
 		}
 	}
 
+	/**
+	 * The remove deliveries by customer vat SQL statement
+	 */
+	
+	private static final String	REMOVE_SALEDELIVERY_BY_CUSTOMER_VAT_SQL =
+			"delete from saledelivery " +
+				"where customer_vat = ?";
+	
+	/**
+	 * Removes all the deliveries of a customer with a single statement
+	 * 
+	 * @param vat The customer's VAT number
+	 * @return The number of deliveries removed
+	 * @throws PersistenceException When there is an error removing the deliveries
+	 */
+	public int removeSaleDeliveries(int vat) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(REMOVE_SALEDELIVERY_BY_CUSTOMER_VAT_SQL)) {
+			statement.setInt(1, vat);
+			return statement.executeUpdate();
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error removing the deliveries of customer " + vat, e);
+		}
+	}
+
 	private static SaleDeliveryRowDataGateway loadSaleDelivery(ResultSet rs) throws RecordNotFoundException{
 		try {
 			SaleDeliveryRowDataGateway newSaleDelivery = new SaleDeliveryRowDataGateway(rs.getInt("sale_id"), rs.getInt("customer_vat"), rs.getInt("address_id"));
@@ -0,0 +1,231 @@
+package webapp.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A line item of a sale: a quantity of a product at a unit price. The total
+ * of the sale is not computed from its lines; it is kept in the sale row and
+ * adjusted (see SaleRowDataGateway.addToTotal) in the same transaction that
+ * adds or removes a line.
+ */
+public class SaleLineRowDataGateway {
+
+	/**
+	 * Line's internal identification (unique, primary key, sequential)
+	 * Generated by the database engine.
+	 */
+	private int id;
+
+	/**
+	 * The id of the line's sale
+	 */
+	private int saleId;
+
+	/**
+	 * The product sold
+	 */
+	private String product;
+
+	/**
+	 * How many units of the product were sold
+	 */
+	private int quantity;
+
+	/**
+	 * The price of each unit
+	 */
+	private double price;
+
+	// 1. constructors
+
+	/**
+	 * Creates a new line of a sale
+	 *
+	 * @param saleId The id of the sale
+	 * @param product The product sold
+	 * @param quantity How many units of the product were sold
+	 * @param price The price of each unit
+	 */
+	public SaleLineRowDataGateway(int saleId, String product, int quantity, double price) {
+		this.saleId = saleId;
+		this.product = product;
+		this.quantity = quantity;
+		this.price = price;
+	}
+
+	public SaleLineRowDataGateway() {
+	}
+
+	// 2. getters
+
+	public int getId() {
+		return id;
+	}
+
+	public int getSaleId() {
+		return saleId;
+	}
+
+	public String getProduct() {
+		return product;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return What the line adds to the total of its sale
+	 */
+	public double getAmount() {
+		return quantity * price;
+	}
+
+	// 3. interaction with the repository
+
+	/**
+	 * The insert line SQL statement
+	 */
+	private static final String INSERT_SALELINE_SQL =
+			"insert into saleline (id, sale_id, product, quantity, price) " +
+			"values (DEFAULT, ?, ?, ?, ?)";
+
+	/**
+	 * Stores the line
+	 *
+	 * @return The id the database generated for the line (also set in this gateway)
+	 * @throws PersistenceException When there is an error storing the line
+	 */
+	public int insert() throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepareGetGenKey(INSERT_SALELINE_SQL)) {
+			statement.setInt(1, saleId);
+			statement.setString(2, product);
+			statement.setInt(3, quantity);
+			statement.setDouble(4, price);
+			statement.executeUpdate();
+			try (ResultSet rs = statement.getGeneratedKeys()) {
+				rs.next();
+				id = rs.getInt(1);
+				return id;
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error adding a line to sale " + saleId, e);
+		}
+	}
+
+	/**
+	 * The select line by id SQL statement
+	 */
+	private static final String GET_SALELINE_BY_ID_SQL =
+			"select * from saleline where id = ?";
+
+	/**
+	 * Gets a line by its id
+	 *
+	 * @param id The id of the line
+	 * @return The line
+	 * @throws RecordNotFoundException When there is no line with the id
+	 * @throws PersistenceException When there is an error getting the line
+	 */
+	public SaleLineRowDataGateway getSaleLineById(int id) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(GET_SALELINE_BY_ID_SQL)) {
+			statement.setInt(1, id);
+			try (ResultSet rs = statement.executeQuery()) {
+				if (!rs.next())
+					throw new RecordNotFoundException("Sale line " + id + " does not exist");
+				DataSource.INSTANCE.rowsRead(statement, 1);
+				return loadSaleLine(rs);
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error getting sale line " + id, e);
+		}
+	}
+
+	/**
+	 * The select the lines of a sale SQL statement
+	 */
+	private static final String GET_SALELINES_BY_SALE_ID_SQL =
+			"select * from saleline where sale_id = ? order by id";
+
+	/**
+	 * Gets the lines of a sale
+	 *
+	 * @param saleId The id of the sale
+	 * @return The lines of the sale, in the order they were added
+	 * @throws PersistenceException When there is an error getting the lines
+	 */
+	public List<SaleLineRowDataGateway> getSaleLines(int saleId) throws PersistenceException {
+		List<SaleLineRowDataGateway> lines = new ArrayList<>();
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(GET_SALELINES_BY_SALE_ID_SQL)) {
+			statement.setInt(1, saleId);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next())
+					lines.add(loadSaleLine(rs));
+				DataSource.INSTANCE.rowsRead(statement, lines.size());
+				return lines;
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error getting the lines of sale " + saleId, e);
+		}
+	}
+
+	/**
+	 * The remove line by id SQL statement
+	 */
+	private static final String REMOVE_SALELINE_BY_ID_SQL =
+			"delete from saleline where id = ?";
+
+	/**
+	 * Removes the line
+	 *
+	 * @throws RecordNotFoundException When the line was already removed
+	 * @throws PersistenceException When there is an error removing the line
+	 */
+	public void removeSaleLine() throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(REMOVE_SALELINE_BY_ID_SQL)) {
+			statement.setInt(1, id);
+			if (statement.executeUpdate() == 0)
+				throw new RecordNotFoundException("Sale line " + id + " does not exist");
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error removing sale line " + id, e);
+		}
+	}
+
+	/**
+	 * The remove the lines of the sales of a customer SQL statement
+	 */
+	private static final String REMOVE_SALELINES_BY_CUSTOMER_VAT_SQL =
+			"delete from saleline " +
+				"where sale_id in (select id from sale where customer_vat = ?)";
+
+	/**
+	 * Removes the lines of all the sales of a customer with a single statement
+	 *
+	 * @param vat The customer's VAT number
+	 * @return The number of lines removed
+	 * @throws PersistenceException When there is an error removing the lines
+	 */
+	public int removeSaleLinesByCustomerVat(int vat) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(REMOVE_SALELINES_BY_CUSTOMER_VAT_SQL)) {
+			statement.setInt(1, vat);
+			return statement.executeUpdate();
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error removing the sale lines of customer " + vat, e);
+		}
+	}
+
+	private static SaleLineRowDataGateway loadSaleLine(ResultSet rs) throws SQLException {
+		SaleLineRowDataGateway line = new SaleLineRowDataGateway(rs.getInt("sale_id"), rs.getString("product"),
+				rs.getInt("quantity"), rs.getDouble("price"));
+		line.id = rs.getInt("id");
+		return line;
+	}
+}
@@ -4,6 +4,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -61,6 +62,14 @@ public class SaleRowDataGateway {
 	public SaleRowDataGateway() {
 	}
 	
+	SaleRowDataGateway(int id, java.sql.Date date, Double total, String statusId, int customerVat) {
+		this.id = id;
+		this.data = date;
+		this.total = total;
+		this.statusId = statusId;
+		this.customerVat = customerVat;
+	}
+	
 	
 	public SaleRowDataGateway(ResultSet rs) throws RecordNotFoundException {
 		try {
@@ -123,9 +132,11 @@ public class SaleRowDataGateway {
 
 	/**
 	 * Stores the information in the repository
+	 * 
+	 * @return The id the database generated for the sale (also set in this gateway)
 	 */
-	public void insert () throws PersistenceException {
-		try (PreparedStatement statement = DataSource.INSTANCE.prepare(INSERT_SALE_SQL)){
+	public int insert () throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepareGetGenKey(INSERT_SALE_SQL)){
 			// set statement arguments
 			statement.setDate(1, data);
 			statement.setDouble(2, total);
@@ -133,27 +144,50 @@ public class SaleRowDataGateway {
 			statement.setInt(4, customerVat);
 			// executes SQL
 			statement.executeUpdate();
+			try (ResultSet rs = statement.getGeneratedKeys()) {
+				rs.next();
+				id = rs.getInt(1);
+			}
 		} catch (SQLException e) {
+			CustomerSalesCache.INSTANCE.invalidate(customerVat);
 			throw new PersistenceException("Internal error!", e);
 		}
+		CustomerSalesCache.INSTANCE.added(this);
+		return id;
 	}
 	
+	/**
+	 * @return A copy of this sale
+	 */
+	SaleRowDataGateway copy() {
+		return new SaleRowDataGateway(id, data, total, statusId, customerVat);
+	}
 	
-	private static SaleRowDataGateway loadSale(ResultSet rs) throws RecordNotFoundException{
-		try {
-			SaleRowDataGateway newSale = new SaleRowDataGateway(rs.getInt("customer_vat"), rs.getDate("date"));
-			newSale.id = rs.getInt("id");
-			newSale.statusId = rs.getString("status");
-			return newSale;
-		} catch (SQLException e) {
-			throw new RecordNotFoundException ("SaleProduct does not exist", e);
-		}
+	
+	private static SaleRowDataGateway loadSale(ResultSet rs) throws SQLException {
+		SaleRowDataGateway newSale = new SaleRowDataGateway(rs.getInt("customer_vat"), rs.getDate("date"));
+		newSale.id = rs.getInt("id");
+		newSale.statusId = rs.getString("status");
+		newSale.total = rs.getDouble("total");
+		return newSale;
 	}
 	
 	private static final String GET_SALE_BY_CUSTOMERS_VAT_SQL = 
-			   "select * from sale where customer_vat = ?";
+			   "select * from sale where customer_vat = ? order by id";
 	
+	/**
+	 * Gets the sales of a customer, from the customer sales cache when they
+	 * are there.
+	 * 
+	 * @param vat The customer's VAT number
+	 * @return The customer's sales, in the order they were made
+	 * @throws PersistenceException When there is an error getting the sales
+	 */
 	public List<SaleRowDataGateway> getAllSales(int vat) throws PersistenceException {
+		return CustomerSalesCache.INSTANCE.get(vat, this::loadAllSales);
+	}
+	
+	private List<SaleRowDataGateway> loadAllSales(int vat) throws PersistenceException {
 		List<SaleRowDataGateway> sales = new ArrayList<SaleRowDataGateway>();
 		try (PreparedStatement statement = DataSource.INSTANCE.prepare(GET_SALE_BY_CUSTOMERS_VAT_SQL)){
 			statement.setInt(1, vat);
@@ -162,6 +196,7 @@ public class SaleRowDataGateway {
 					sales.add(loadSale(rs));
 				}
 				rs.next();
+				DataSource.INSTANCE.rowsRead(statement, sales.size());
 				return sales;
 			}
 		} catch (SQLException e) {
@@ -180,6 +215,7 @@ public class SaleRowDataGateway {
 					sales.add(loadSale(rs));
 				}
 				rs.next();
+				DataSource.INSTANCE.rowsRead(statement, sales.size());
 				return sales;
 			}
 		} catch (SQLException e) {
@@ -187,6 +223,86 @@ public class SaleRowDataGateway {
 		}
 	}
 	
+	/**
+	 * The select the sales made between two dates SQL statement
+	 */
+	private static final String GET_SALES_BY_DATE_SQL = 
+			   "select * from sale where date between ? and ? order by date, id";
+	
+	/**
+	 * The select the sales with a status made between two dates SQL statement
+	 */
+	private static final String GET_SALES_BY_STATUS_AND_DATE_SQL = 
+			   "select * from sale where status = ? and date between ? and ? order by date, id";
+	
+	/**
+	 * Iterates over the sales made between two dates, in date order, reading
+	 * them from the database as they are asked for. The range is read from
+	 * the date index (or the status and date one), so no sale outside it is
+	 * visited.
+	 * 
+	 * @param from The first day of the range
+	 * @param to The last day of the range (inclusive)
+	 * @param status The status of the sales to get (null for any)
+	 * @param fetchSize The number of rows the driver should fetch at a time
+	 * @return A cursor over the sales, to be closed once consumed
+	 * @throws PersistenceException When there is an error querying the sales
+	 */
+	public RowCursor<SaleRowDataGateway> getSalesBetween (Date from, Date to, SaleStatus status, int fetchSize) 
+			throws PersistenceException {
+		PreparedStatement statement = DataSource.INSTANCE.prepare(status == null ? 
+				GET_SALES_BY_DATE_SQL : GET_SALES_BY_STATUS_AND_DATE_SQL);
+		try {
+			int i = 1;
+			if (status != null)
+				statement.setString(i++, status == SaleStatus.OPEN ? OPEN : CLOSED);
+			statement.setDate(i++, new java.sql.Date(from.getTime()));
+			statement.setDate(i, new java.sql.Date(to.getTime()));
+		} catch (SQLException e) {
+			try {
+				statement.close();
+			} catch (SQLException e1) {
+				e.addSuppressed(e1);
+			}
+			throw new PersistenceException("Internal error getting the sales between " + from + " and " + to, e);
+		}
+		return new RowCursor<>(statement, fetchSize, SaleRowDataGateway::loadSale);
+	}
+	
+	/**
+	 * The select a page of sales SQL statement (newest first)
+	 */
+	private static final String GET_SALES_PAGE_SQL = 
+			   "select * from sale where id < ? order by id desc fetch first ? rows only";
+	
+	/**
+	 * Gets a page of sales, newest first. The page starts right after the last
+	 * sale of the previous one (a range on the primary key), so every page
+	 * costs the same whatever its depth.
+	 * 
+	 * @param beforeId The id of the last sale of the previous page
+	 * (Integer.MAX_VALUE for the first page)
+	 * @param limit The maximum number of sales to get
+	 * @return The sales with ids below beforeId, newest first
+	 * @throws PersistenceException When there is an error getting the sales
+	 */
+	public List<SaleRowDataGateway> getSalesPage(int beforeId, int limit) throws PersistenceException {
+		List<SaleRowDataGateway> sales = new ArrayList<SaleRowDataGateway>();
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(GET_SALES_PAGE_SQL)){
+			statement.setInt(1, beforeId);
+			statement.setInt(2, limit);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					sales.add(loadSale(rs));
+				}
+				DataSource.INSTANCE.rowsRead(statement, sales.size());
+				return sales;
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error getting a page of sales", e);
+		}
+	}
+	
 	/**
 	 * The update customerPhone SQL statement
 	 */
@@ -204,6 +320,106 @@ public class SaleRowDataGateway {
 			statement.executeUpdate();
 		} catch (SQLException e) {
 			throw new PersistenceException("Internal error updating Status " + id + ".", e);
+		} finally {
+			invalidateCustomerSales();
+		}
+	}
+	
+	/**
+	 * The close an open sale by id SQL statement
+	 */
+	private static final String	CLOSE_SALE_BY_ID_SQL =
+			"update sale " +
+					   "set status = ? " +
+					   "where id = ? and status = ?";
+	
+	/**
+	 * Closes the open sales among the given ones, with the updates sent to
+	 * the database in a single batch.
+	 * 
+	 * @param ids The ids of the sales
+	 * @return The number of sales closed (sales already closed, or missing,
+	 * are not counted)
+	 * @throws PersistenceException When there is an error closing the sales
+	 */
+	public int closeSales (Collection<Integer> ids) throws PersistenceException {
+		if (ids.isEmpty())
+			return 0;
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(CLOSE_SALE_BY_ID_SQL)){
+			for (int saleId : ids) {
+				statement.setString(1, CLOSED);
+				statement.setInt(2, saleId);
+				statement.setString(3, OPEN);
+				statement.addBatch();
+			}
+			int closed = 0;
+			for (int count : statement.executeBatch())
+				if (count > 0)
+					closed += count;
+			return closed;
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error closing " + ids.size() + " sales.", e);
+		} finally {
+			// the customers of the sales are not known here
+			CustomerSalesCache.INSTANCE.invalidateAll();
+		}
+	}
+	
+	/**
+	 * The close the open sales of a customer SQL statement
+	 */
+	private static final String	CLOSE_SALES_BY_CUSTOMER_VAT_SQL =
+			"update sale " +
+					   "set status = ? " +
+					   "where customer_vat = ? and status = ?";
+	
+	/**
+	 * Closes all the open sales of a customer with a single statement
+	 * 
+	 * @param vat The customer's VAT number
+	 * @return The number of sales closed
+	 * @throws PersistenceException When there is an error closing the sales
+	 */
+	public int closeSalesByCustomerVat (int vat) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(CLOSE_SALES_BY_CUSTOMER_VAT_SQL)){
+			statement.setString(1, CLOSED);
+			statement.setInt(2, vat);
+			statement.setString(3, OPEN);
+			return statement.executeUpdate();
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error closing the sales of customer " + vat + ".", e);
+		} finally {
+			CustomerSalesCache.INSTANCE.invalidate(vat);
+		}
+	}
+	
+	/**
+	 * The close the open sales made between two dates SQL statement
+	 */
+	private static final String	CLOSE_SALES_BY_DATE_SQL =
+			"update sale " +
+					   "set status = ? " +
+					   "where date between ? and ? and status = ?";
+	
+	/**
+	 * Closes all the open sales made between two dates with a single statement
+	 * 
+	 * @param from The first day of the range
+	 * @param to The last day of the range (inclusive)
+	 * @return The number of sales closed
+	 * @throws PersistenceException When there is an error closing the sales
+	 */
+	public int closeSalesBetween (Date from, Date to) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(CLOSE_SALES_BY_DATE_SQL)){
+			statement.setString(1, CLOSED);
+			statement.setDate(2, new java.sql.Date(from.getTime()));
+			statement.setDate(3, new java.sql.Date(to.getTime()));
+			statement.setString(4, OPEN);
+			return statement.executeUpdate();
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error closing the sales between " + from + " and " + to + ".", e);
+		} finally {
+			CustomerSalesCache.INSTANCE.invalidateAll();
 		}
 	}
 	
@@ -219,15 +435,78 @@ public class SaleRowDataGateway {
 			// set statement arguments
 			statement.setInt(1, id);
 			try (ResultSet rs = statement.executeQuery()) {
-				rs.next();
-				SaleRowDataGateway s = new SaleRowDataGateway(rs);
-				return s;
+				if (!rs.next())
+					throw new RecordNotFoundException("Sale " + id + " does not exist");
+				DataSource.INSTANCE.rowsRead(statement, 1);
+				return loadSale(rs);
 			}
 		} catch (SQLException e) {
 			throw new PersistenceException("Internal error updating customer " + id + ".", e);
 		}
 	}
 	
+	/**
+	 * The add to the total of an open sale SQL statement
+	 */
+	private static final String	ADD_TO_TOTAL_SQL =
+			"update sale " +
+					   "set total = total + ? " +
+					   "where id = ? and status = ?";
+	
+	/**
+	 * Adds an amount to the total of this sale, in the database and in this
+	 * gateway, when a line is added to (or, with a negative amount, removed
+	 * from) the sale. The total is changed by the database, in place, so
+	 * changes made by concurrent transactions are not lost, and is never
+	 * computed again from the lines.
+	 * 
+	 * @param amount The amount to add
+	 * @throws RecordNotFoundException When the sale is no longer open (or no longer exists)
+	 * @throws PersistenceException When there is an error updating the total
+	 */
+	public void addToTotal (double amount) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(ADD_TO_TOTAL_SQL)){
+			statement.setDouble(1, amount);
+			statement.setInt(2, id);
+			statement.setString(3, OPEN);
+			if (statement.executeUpdate() == 0)
+				throw new RecordNotFoundException("Sale " + id + " is not open");
+			total += amount;
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error updating the total of sale " + id + ".", e);
+		} finally {
+			invalidateCustomerSales();
+		}
+	}
+	
+	/**
+	 * The sale existence by id SQL statement
+	 */
+	private static final String EXISTS_SALE_BY_ID_SQL =
+			"select 1 from sale " +
+					   "where id = ?";
+	
+	/**
+	 * Checks whether there is a sale with an id. 
+	 * Only probes the primary key index; the sale is not loaded.
+	 * 
+	 * @param id The id of the sale
+	 * @return Whether the sale exists
+	 * @throws PersistenceException When there is an error querying the database
+	 */
+	public boolean existsById (int id) throws PersistenceException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(EXISTS_SALE_BY_ID_SQL)){
+			statement.setInt(1, id);
+			try (ResultSet rs = statement.executeQuery()) {
+				boolean exists = rs.next();
+				DataSource.INSTANCE.rowsRead(statement, exists ? 1 : 0);
+				return exists;
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException("Internal error checking sale " + id + ".", e);
+		}
+	}
+	
 	/**
      * Removes a sale using the ID SQL statement
      */
@@ -241,6 +520,44 @@ public class SaleRowDataGateway {
             statement.executeUpdate();
         } catch (SQLException e) {
             throw new PersistenceException("Internal error removing sale " + id + ".", e);
+        } finally {
+            invalidateCustomerSales();
+        }
+    }
+    
+    /**
+     * Forgets the cached sales of this sale's customer, or of every customer
+     * when this gateway does not know the customer.
+     */
+    private void invalidateCustomerSales() {
+        if (customerVat != 0)
+            CustomerSalesCache.INSTANCE.invalidate(customerVat);
+        else
+            CustomerSalesCache.INSTANCE.invalidateAll();
+    }
+    
+    /**
+     * Removes all the sales of a customer SQL statement
+     */
+    private static final String REMOVE_SALES_BY_CUSTOMER_VAT =
+            "delete from sale " +
+                       "where customer_vat = ?";
+    
+    /**
+     * Removes all the sales of a customer with a single statement
+     * 
+     * @param vat The customer's VAT number
+     * @return The number of sales removed
+     * @throws PersistenceException When there is an error removing the sales
+     */
+    public int removeSalesByCustomerVat (int vat) throws PersistenceException {
+        try (PreparedStatement statement = DataSource.INSTANCE.prepare(REMOVE_SALES_BY_CUSTOMER_VAT)){
+            statement.setInt(1, vat);
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new PersistenceException("Internal error removing the sales of customer " + vat + ".", e);
+        } finally {
+            CustomerSalesCache.INSTANCE.invalidate(vat);
         }
     }
 		
@@ -0,0 +1,196 @@
+package webapp.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A least recently used cache of the prepared statements of one connection,
+ * keyed by their SQL text.
+ *
+ * Each cached statement is handed out through a TimedStatement of its own,
+ * reused from lease to lease, whose close() returns the underlying statement
+ * to the cache (with its parameters and batch cleared) instead of closing it,
+ * so the gateways keep using try-with-resources as before. When the statement
+ * for some SQL text is already in use (e.g., a result set still being read) a
+ * plain, uncached statement is prepared instead.
+ *
+ * Like the connection it belongs to, the cache is used by one thread at a time.
+ *
+ */
+class StatementCache {
+
+	/**
+	 * Hit, miss and eviction counters shared by the caches of a pool
+	 */
+	static class Stats {
+		final LongAdder hits = new LongAdder();
+		final LongAdder misses = new LongAdder();
+		final LongAdder evictions = new LongAdder();
+	}
+
+	/**
+	 * The key columns that ask for the keys generated by the database,
+	 * whatever they are
+	 */
+	private static final String[] GENERATED_KEYS = {};
+
+	/**
+	 * A cached physical statement, and the handle it is leased through
+	 */
+	static class Cached {
+		final PreparedStatement statement;
+		final String[] keyColumns;
+		final TimedStatement handle;
+		boolean inUse;
+		boolean evicted;
+
+		Cached(StatementCache cache, String sql, PreparedStatement statement, String[] keyColumns) {
+			this.statement = statement;
+			this.keyColumns = keyColumns;
+			this.handle = new TimedStatement(statement, sql, cache, this);
+		}
+	}
+
+	private final Connection connection;
+	private final int capacity;
+	private final Stats stats;
+	private final Map<String, Cached> entries;
+
+	/**
+	 * @param connection The connection whose statements are cached
+	 * @param capacity The maximum number of cached statements (0 disables caching)
+	 * @param stats Where to count hits, misses and evictions
+	 */
+	StatementCache(Connection connection, int capacity, Stats stats) {
+		this.connection = connection;
+		this.capacity = capacity;
+		this.stats = stats;
+		this.entries = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+				if (size() <= StatementCache.this.capacity)
+					return false;
+				evict(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Gets a prepared statement for the SQL text, reusing a cached one when
+	 * possible.
+	 *
+	 * @param sql The SQL text of the statement
+	 * @param returnGeneratedKeys Whether the statement must return the keys
+	 * generated by the database
+	 * @return The prepared statement
+	 * @throws SQLException In case the statement cannot be prepared
+	 */
+	PreparedStatement prepare(String sql, boolean returnGeneratedKeys) throws SQLException {
+		return prepare(sql, returnGeneratedKeys ? GENERATED_KEYS : null);
+	}
+
+	/**
+	 * Gets a prepared statement for the SQL text that returns the given
+	 * columns of the rows it inserts, reusing a cached one when possible.
+	 *
+	 * @param sql The SQL text of the statement
+	 * @param keyColumns The columns returned as generated keys (null for
+	 * none, empty for the ones generated by the database)
+	 * @return The prepared statement
+	 * @throws SQLException In case the statement cannot be prepared
+	 */
+	PreparedStatement prepare(String sql, String[] keyColumns) throws SQLException {
+		if (capacity <= 0)
+			return TimedStatement.wrap(physicalPrepare(sql, keyColumns), sql);
+		Cached entry = entries.get(sql);
+		if (entry != null && !entry.inUse && Arrays.equals(entry.keyColumns, keyColumns)) {
+			stats.hits.increment();
+			return lease(entry);
+		}
+		stats.misses.increment();
+		PreparedStatement statement = physicalPrepare(sql, keyColumns);
+		if (entry != null)
+			// the cached one is busy (or of another kind): do not cache this one
+			return TimedStatement.wrap(statement, sql);
+		entry = new Cached(this, sql, statement, keyColumns);
+		entries.put(sql, entry);
+		return lease(entry);
+	}
+
+	/**
+	 * Closes all cached statements
+	 */
+	void close() {
+		for (Cached entry : entries.values())
+			closeQuietly(entry.statement);
+		entries.clear();
+	}
+
+	private PreparedStatement physicalPrepare(String sql, String[] keyColumns) throws SQLException {
+		if (keyColumns == null)
+			return connection.prepareStatement(sql);
+		if (keyColumns.length == 0)
+			return connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+		return connection.prepareStatement(sql, keyColumns);
+	}
+
+	private PreparedStatement lease(Cached entry) {
+		entry.inUse = true;
+		entry.handle.lease();
+		return entry.handle;
+	}
+
+	private void evict(Cached entry) {
+		stats.evictions.increment();
+		if (entry.inUse)
+			entry.evicted = true;
+		else
+			closeQuietly(entry.statement);
+	}
+
+	/**
+	 * Takes back a leased statement, when its handle is closed
+	 *
+	 * @param entry The cached statement
+	 * @param lastResult The last result set handed out by the handle (if any)
+	 */
+	void giveBack(Cached entry, ResultSet lastResult) {
+		if (lastResult != null) {
+			try {
+				lastResult.close();
+			} catch (SQLException e) {
+				// the statement is reset below anyway
+			}
+		}
+		if (entry.evicted) {
+			closeQuietly(entry.statement);
+			return;
+		}
+		try {
+			entry.statement.clearParameters();
+			entry.statement.clearBatch();
+			entry.inUse = false;
+		} catch (SQLException e) {
+			entries.values().remove(entry);
+			closeQuietly(entry.statement);
+		}
+	}
+
+	private static void closeQuietly(Statement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// nothing that we can do about it...
+		}
+	}
+}
@@ -0,0 +1,1085 @@
+package webapp.persistence;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import webapp.metrics.Metrics;
+import webapp.metrics.OperationStats;
+
+/**
+ * A prepared statement that times its executions. Each execution is recorded
+ * in the statistics of the statement's SQL text (see Metrics.statement): how
+ * long it takes, whether it fails, and how many rows it changes or, for a
+ * query, how many rows its caller says it read (see DataSource.rowsRead).
+ *
+ * An execution that takes longer than the data source's slow query threshold
+ * is logged (to the webapp.persistence.slowquery logger) with its bind
+ * parameters, the gateway method that ran it, and how long it took to
+ * execute and, for a query, to fetch its rows (until the statement is
+ * closed or executed again).
+ *
+ * It is also the handle of a statement leased from a connection's statement
+ * cache: closing it gives the statement back (with its parameters and batch
+ * cleared) instead of closing it, and it is reused for the next lease of
+ * the same statement, so it must not be kept once closed.
+ *
+ * The result sets are not wrapped. The parameters are only kept while the
+ * slow query log is on, the primitive ones without boxing, and the message
+ * and the caller are only worked out for the slow executions. When neither
+ * metrics nor the slow query log are on the executions are not timed, and
+ * the statements that are not cached are not wrapped at all.
+ */
+class TimedStatement implements PreparedStatement {
+
+	static final Logger SLOW_QUERY_LOG = Logger.getLogger("webapp.persistence.slowquery");
+
+	/**
+	 * How many characters of a parameter value are logged
+	 */
+	private static final int MAX_LOGGED_VALUE = 100;
+
+	/**
+	 * The kinds of the kept parameters
+	 */
+	private static final byte UNSET = 0;
+	private static final byte LONG = 1;
+	private static final byte DOUBLE = 2;
+	private static final byte FLOAT = 3;
+	private static final byte BOOLEAN = 4;
+	private static final byte OBJECT = 5;
+
+	private final PreparedStatement statement;
+
+	private final String sql;
+
+	/**
+	 * The statement cache the statement is leased from, and its entry in
+	 * it (both null for a statement that is not cached)
+	 */
+	private final StatementCache cache;
+	private final StatementCache.Cached cached;
+
+	/**
+	 * Whether the executions are timed, for the metrics or the slow query
+	 * log, and the statistics of the SQL text (null when metrics are
+	 * disabled). Set again on each lease.
+	 */
+	private boolean timed;
+	private OperationStats stats;
+
+	/**
+	 * Whether the bind parameters are kept, for the slow query log
+	 */
+	private boolean keepsParameters;
+
+	private boolean closed;
+
+	/**
+	 * The last result set handed out, closed when a leased statement is
+	 * given back
+	 */
+	private ResultSet result;
+
+	/**
+	 * The kind of each bind parameter set, by index, and its value: the
+	 * primitive ones (as their bits) in numbers, the others in objects. The
+	 * arrays are grown as needed.
+	 */
+	private byte[] types;
+	private long[] numbers;
+	private Object[] objects;
+
+	/**
+	 * Whether the rows of the last query are being read, since when, and how
+	 * long executing it took
+	 */
+	private boolean fetching;
+	private long fetchStart;
+	private long executeNanos;
+
+	/**
+	 * The rows of that query read so far, as told by the caller
+	 */
+	private long rowsRead;
+
+	/**
+	 * Creates the handle of a cached statement, leased with lease()
+	 */
+	TimedStatement(PreparedStatement statement, String sql, StatementCache cache, StatementCache.Cached cached) {
+		this.statement = statement;
+		this.sql = sql;
+		this.cache = cache;
+		this.cached = cached;
+		this.closed = true;
+	}
+
+	/**
+	 * @return The statement, timing its executions when metrics or the slow
+	 * query log are enabled
+	 */
+	static PreparedStatement wrap(PreparedStatement statement, String sql) {
+		if (!Metrics.INSTANCE.isEnabled() && DataSource.INSTANCE.getSlowQueryThresholdNanos() < 0)
+			return statement;
+		TimedStatement timed = new TimedStatement(statement, sql, null, null);
+		timed.lease();
+		return timed;
+	}
+
+	/**
+	 * Hands out the statement again, timing it as metrics and the slow query
+	 * log are now configured
+	 */
+	void lease() {
+		boolean metrics = Metrics.INSTANCE.isEnabled();
+		keepsParameters = DataSource.INSTANCE.getSlowQueryThresholdNanos() >= 0;
+		timed = metrics || keepsParameters;
+		stats = metrics ? Metrics.INSTANCE.statement(sql) : null;
+		if (types != null)
+			Arrays.fill(types, UNSET);
+		closed = false;
+	}
+
+	/**
+	 * @return The statement, unless this handle is closed
+	 */
+	private PreparedStatement open() throws SQLException {
+		if (closed)
+			throw new SQLException("Statement is closed");
+		return statement;
+	}
+
+	/**
+	 * Counts rows read from the result of a statement's last query, when the
+	 * statement is timed
+	 */
+	static void rowsRead(PreparedStatement statement, long rows) {
+		if (statement instanceof TimedStatement)
+			((TimedStatement) statement).rowsRead += rows;
+	}
+
+	/**
+	 * @return When (System.nanoTime) an execution starts, after ending the
+	 * reading of the previous query's rows (executing closes its result set)
+	 */
+	private long beforeExecute() {
+		endFetch();
+		return timed ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records an execution that is not a query
+	 */
+	private void afterExecute(long start, boolean failed, long rows) {
+		if (!timed)
+			return;
+		if (stats != null) {
+			stats.record(start, failed);
+			stats.addRows(rows);
+		}
+		checkSlow(System.nanoTime() - start, 0, rows);
+	}
+
+	/**
+	 * Starts the reading of the rows of a query executed successfully
+	 */
+	private void startFetch(long start) {
+		if (!timed)
+			return;
+		long now = System.nanoTime();
+		fetching = true;
+		fetchStart = now;
+		executeNanos = now - start;
+		rowsRead = 0;
+	}
+
+	/**
+	 * Ends the reading of the last query's rows, if there is one, counting
+	 * them and logging the query if it was slow
+	 */
+	private void endFetch() {
+		if (fetching) {
+			fetching = false;
+			long fetchNanos = System.nanoTime() - fetchStart;
+			if (stats != null)
+				stats.addRows(rowsRead);
+			checkSlow(executeNanos, fetchNanos, rowsRead);
+		}
+	}
+
+	/**
+	 * @return The position of the parameter in the arrays, growing them if
+	 * needed
+	 */
+	private int slot(int index) {
+		if (types == null) {
+			int length = Math.max(8, index);
+			types = new byte[length];
+			numbers = new long[length];
+			objects = new Object[length];
+		} else if (index > types.length) {
+			int length = Math.max(index, 2 * types.length);
+			types = Arrays.copyOf(types, length);
+			numbers = Arrays.copyOf(numbers, length);
+			objects = Arrays.copyOf(objects, length);
+		}
+		return index - 1;
+	}
+
+	private void keep(int index, Object value) {
+		int i = slot(index);
+		types[i] = OBJECT;
+		objects[i] = value;
+	}
+
+	private void keepLong(int index, long value) {
+		int i = slot(index);
+		types[i] = LONG;
+		numbers[i] = value;
+		objects[i] = null;
+	}
+
+	private void keepDouble(int index, double value) {
+		keepLong(index, Double.doubleToRawLongBits(value));
+		types[index - 1] = DOUBLE;
+	}
+
+	private void keepFloat(int index, float value) {
+		keepLong(index, Float.floatToRawIntBits(value));
+		types[index - 1] = FLOAT;
+	}
+
+	private void keepBoolean(int index, boolean value) {
+		keepLong(index, value ? 1 : 0);
+		types[index - 1] = BOOLEAN;
+	}
+
+	private void checkSlow(long executeNanos, long fetchNanos, long rows) {
+		long threshold = DataSource.INSTANCE.getSlowQueryThresholdNanos();
+		if (threshold >= 0 && executeNanos + fetchNanos >= threshold && SLOW_QUERY_LOG.isLoggable(Level.WARNING))
+			SLOW_QUERY_LOG.warning(slowQueryMessage(executeNanos, fetchNanos, rows));
+	}
+
+	private String slowQueryMessage(long executeNanos, long fetchNanos, long rows) {
+		StringBuilder message = new StringBuilder("Slow SQL (")
+				.append(millis(executeNanos + fetchNanos)).append(" ms: execute ").append(millis(executeNanos))
+				.append(" ms, fetch ").append(millis(fetchNanos)).append(" ms, ").append(rows).append(" rows) in ")
+				.append(caller()).append(": ").append(sql);
+		if (types != null) {
+			message.append(" [");
+			int last = types.length;
+			while (last > 0 && types[last - 1] == UNSET)
+				last--;
+			for (int i = 0; i < last; i++) {
+				if (i > 0)
+					message.append(", ");
+				message.append(i + 1).append('=');
+				appendValue(message, i);
+			}
+			message.append(']');
+		}
+		return message.toString();
+	}
+
+	private void appendValue(StringBuilder message, int i) {
+		switch (types[i]) {
+		case LONG:
+			message.append(numbers[i]);
+			break;
+		case DOUBLE:
+			message.append(Double.longBitsToDouble(numbers[i]));
+			break;
+		case FLOAT:
+			message.append(Float.intBitsToFloat((int) numbers[i]));
+			break;
+		case BOOLEAN:
+			message.append(numbers[i] != 0);
+			break;
+		case OBJECT:
+			if (objects[i] instanceof String) {
+				String s = (String) objects[i];
+				message.append('\'').append(s.length() > MAX_LOGGED_VALUE ? s.substring(0, MAX_LOGGED_VALUE) + "..." : s)
+					.append('\'');
+			} else
+				message.append(objects[i]);
+			break;
+		default:
+			message.append('?');
+		}
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	/**
+	 * @return The method (e.g. SaleRowDataGateway.getSalesBetween) that ran the
+	 * statement: the first on the call stack outside the data source, the
+	 * statement wrapper and the JDK
+	 */
+	private static String caller() {
+		for (StackTraceElement frame : new Throwable().getStackTrace()) {
+			String className = frame.getClassName();
+			if (className.equals(TimedStatement.class.getName())
+					|| className.equals(DataSource.class.getName())
+					|| className.startsWith("java.") || className.startsWith("javax.")
+					|| className.startsWith("jdk.") || className.startsWith("sun.") || className.startsWith("com.sun."))
+				continue;
+			return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+		}
+		return "(unknown)";
+	}
+
+	@Override
+	public void addBatch() throws SQLException {
+		open().addBatch();
+	}
+
+	@Override
+	public void addBatch(String sql) throws SQLException {
+		open().addBatch(sql);
+	}
+
+	@Override
+	public void cancel() throws SQLException {
+		open().cancel();
+	}
+
+	@Override
+	public void clearBatch() throws SQLException {
+		open().clearBatch();
+	}
+
+	@Override
+	public void clearParameters() throws SQLException {
+		if (types != null)
+			Arrays.fill(types, UNSET);
+		open().clearParameters();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		open().clearWarnings();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (closed)
+			return;
+		closed = true;
+		endFetch();
+		if (cached == null)
+			statement.close();
+		else {
+			ResultSet last = result;
+			result = null;
+			cache.giveBack(cached, last);
+		}
+	}
+
+	@Override
+	public void closeOnCompletion() throws SQLException {
+		open().closeOnCompletion();
+	}
+
+	@Override
+	public boolean execute() throws SQLException {
+		long start = beforeExecute();
+		boolean failed = true;
+		try {
+			boolean result = open().execute();
+			failed = false;
+			return result;
+		} finally {
+			afterExecute(start, failed, 0);
+		}
+	}
+
+	@Override
+	public boolean execute(String sql) throws SQLException {
+		return open().execute(sql);
+	}
+
+	@Override
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		return open().execute(sql, columnNames);
+	}
+
+	@Override
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		return open().execute(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		return open().execute(sql, columnIndexes);
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+		long start = beforeExecute();
+		boolean failed = true;
+		long rows = 0;
+		try {
+			int[] counts = open().executeBatch();
+			for (int n : counts)
+				rows += Math.max(0, n);
+			failed = false;
+			return counts;
+		} finally {
+			afterExecute(start, failed, rows);
+		}
+	}
+
+	@Override
+	public long[] executeLargeBatch() throws SQLException {
+		long start = beforeExecute();
+		boolean failed = true;
+		long rows = 0;
+		try {
+			long[] counts = open().executeLargeBatch();
+			for (long n : counts)
+				rows += Math.max(0, n);
+			failed = false;
+			return counts;
+		} finally {
+			afterExecute(start, failed, rows);
+		}
+	}
+
+	@Override
+	public long executeLargeUpdate() throws SQLException {
+		long start = beforeExecute();
+		boolean failed = true;
+		long rows = 0;
+		try {
+			rows = open().executeLargeUpdate();
+			failed = false;
+			return rows;
+		} finally {
+			afterExecute(start, failed, rows);
+		}
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql) throws SQLException {
+		return open().executeLargeUpdate(sql);
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+		return open().executeLargeUpdate(sql, columnNames);
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		return open().executeLargeUpdate(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		return open().executeLargeUpdate(sql, columnIndexes);
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		long start = beforeExecute();
+		boolean failed = true;
+		try {
+			result = open().executeQuery();
+			failed = false;
+			return result;
+		} finally {
+			if (stats != null)
+				stats.record(start, failed);
+			if (!failed)
+				startFetch(start);
+			else if (timed)
+				checkSlow(System.nanoTime() - start, 0, 0);
+		}
+	}
+
+	@Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+		return open().executeQuery(sql);
+	}
+
+	@Override
+	public int executeUpdate() throws SQLException {
+		long start = beforeExecute();
+		boolean failed = true;
+		int rows = 0;
+		try {
+			rows = open().executeUpdate();
+			failed = false;
+			return rows;
+		} finally {
+			afterExecute(start, failed, rows);
+		}
+	}
+
+	@Override
+	public int executeUpdate(String sql) throws SQLException {
+		return open().executeUpdate(sql);
+	}
+
+	@Override
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		return open().executeUpdate(sql, columnNames);
+	}
+
+	@Override
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		return open().executeUpdate(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		return open().executeUpdate(sql, columnIndexes);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return open().getConnection();
+	}
+
+	@Override
+	public int getFetchDirection() throws SQLException {
+		return open().getFetchDirection();
+	}
+
+	@Override
+	public int getFetchSize() throws SQLException {
+		return open().getFetchSize();
+	}
+
+	@Override
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return result = open().getGeneratedKeys();
+	}
+
+	@Override
+	public long getLargeMaxRows() throws SQLException {
+		return open().getLargeMaxRows();
+	}
+
+	@Override
+	public long getLargeUpdateCount() throws SQLException {
+		return open().getLargeUpdateCount();
+	}
+
+	@Override
+	public int getMaxFieldSize() throws SQLException {
+		return open().getMaxFieldSize();
+	}
+
+	@Override
+	public int getMaxRows() throws SQLException {
+		return open().getMaxRows();
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return open().getMetaData();
+	}
+
+	@Override
+	public boolean getMoreResults() throws SQLException {
+		return open().getMoreResults();
+	}
+
+	@Override
+	public boolean getMoreResults(int current) throws SQLException {
+		return open().getMoreResults(current);
+	}
+
+	@Override
+	public ParameterMetaData getParameterMetaData() throws SQLException {
+		return open().getParameterMetaData();
+	}
+
+	@Override
+	public int getQueryTimeout() throws SQLException {
+		return open().getQueryTimeout();
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		return result = open().getResultSet();
+	}
+
+	@Override
+	public int getResultSetConcurrency() throws SQLException {
+		return open().getResultSetConcurrency();
+	}
+
+	@Override
+	public int getResultSetHoldability() throws SQLException {
+		return open().getResultSetHoldability();
+	}
+
+	@Override
+	public int getResultSetType() throws SQLException {
+		return open().getResultSetType();
+	}
+
+	@Override
+	public int getUpdateCount() throws SQLException {
+		return open().getUpdateCount();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return open().getWarnings();
+	}
+
+	@Override
+	public boolean isCloseOnCompletion() throws SQLException {
+		return open().isCloseOnCompletion();
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return closed || statement.isClosed();
+	}
+
+	@Override
+	public boolean isPoolable() throws SQLException {
+		return open().isPoolable();
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(statement) || open().isWrapperFor(iface);
+	}
+
+	@Override
+	public void setArray(int parameterIndex, Array x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setArray(parameterIndex, x);
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setAsciiStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setAsciiStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setAsciiStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setBigDecimal(parameterIndex, x);
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setBinaryStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setBinaryStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setBinaryStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, Blob x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setBlob(parameterIndex, x);
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, InputStream x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setBlob(parameterIndex, x);
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, InputStream x, long length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setBlob(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+		if (keepsParameters)
+			keepBoolean(parameterIndex, x);
+		open().setBoolean(parameterIndex, x);
+	}
+
+	@Override
+	public void setByte(int parameterIndex, byte x) throws SQLException {
+		if (keepsParameters)
+			keepLong(parameterIndex, x);
+		open().setByte(parameterIndex, x);
+	}
+
+	@Override
+	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setBytes(parameterIndex, x);
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setCharacterStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader x, int length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setCharacterStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setCharacterStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Clob x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Reader x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Reader x, long length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setClob(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setCursorName(String name) throws SQLException {
+		open().setCursorName(name);
+	}
+
+	@Override
+	public void setDate(int parameterIndex, Date x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setDate(parameterIndex, x);
+	}
+
+	@Override
+	public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setDate(parameterIndex, x, cal);
+	}
+
+	@Override
+	public void setDouble(int parameterIndex, double x) throws SQLException {
+		if (keepsParameters)
+			keepDouble(parameterIndex, x);
+		open().setDouble(parameterIndex, x);
+	}
+
+	@Override
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		open().setEscapeProcessing(enable);
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		open().setFetchDirection(direction);
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		open().setFetchSize(rows);
+	}
+
+	@Override
+	public void setFloat(int parameterIndex, float x) throws SQLException {
+		if (keepsParameters)
+			keepFloat(parameterIndex, x);
+		open().setFloat(parameterIndex, x);
+	}
+
+	@Override
+	public void setInt(int parameterIndex, int x) throws SQLException {
+		if (keepsParameters)
+			keepLong(parameterIndex, x);
+		open().setInt(parameterIndex, x);
+	}
+
+	@Override
+	public void setLargeMaxRows(long max) throws SQLException {
+		open().setLargeMaxRows(max);
+	}
+
+	@Override
+	public void setLong(int parameterIndex, long x) throws SQLException {
+		if (keepsParameters)
+			keepLong(parameterIndex, x);
+		open().setLong(parameterIndex, x);
+	}
+
+	@Override
+	public void setMaxFieldSize(int max) throws SQLException {
+		open().setMaxFieldSize(max);
+	}
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		open().setMaxRows(max);
+	}
+
+	@Override
+	public void setNCharacterStream(int parameterIndex, Reader x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setNCharacterStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setNCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setNCharacterStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, NClob x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setNClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, Reader x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setNClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, Reader x, long length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setNClob(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setNString(int parameterIndex, String x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setNString(parameterIndex, x);
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, null);
+		open().setNull(parameterIndex, sqlType);
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, null);
+		open().setNull(parameterIndex, sqlType, typeName);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setObject(parameterIndex, x);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setObject(parameterIndex, x, targetSqlType);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setObject(parameterIndex, x, targetSqlType);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+	}
+
+	@Override
+	public void setPoolable(boolean enable) throws SQLException {
+		open().setPoolable(enable);
+	}
+
+	@Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		open().setQueryTimeout(seconds);
+	}
+
+	@Override
+	public void setRef(int parameterIndex, Ref x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setRef(parameterIndex, x);
+	}
+
+	@Override
+	public void setRowId(int parameterIndex, RowId x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setRowId(parameterIndex, x);
+	}
+
+	@Override
+	public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setSQLXML(parameterIndex, x);
+	}
+
+	@Override
+	public void setShort(int parameterIndex, short x) throws SQLException {
+		if (keepsParameters)
+			keepLong(parameterIndex, x);
+		open().setShort(parameterIndex, x);
+	}
+
+	@Override
+	public void setString(int parameterIndex, String x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setString(parameterIndex, x);
+	}
+
+	@Override
+	public void setTime(int parameterIndex, Time x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setTime(parameterIndex, x);
+	}
+
+	@Override
+	public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setTime(parameterIndex, x, cal);
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setTimestamp(parameterIndex, x);
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setTimestamp(parameterIndex, x, cal);
+	}
+
+	@Override
+	public void setURL(int parameterIndex, URL x) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setURL(parameterIndex, x);
+	}
+
+	@Override
+	@Deprecated
+	public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		if (keepsParameters)
+			keep(parameterIndex, x);
+		open().setUnicodeStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return iface.isInstance(statement) ? iface.cast(statement) : open().unwrap(iface);
+	}
+
+	@Override
+	public String toString() {
+		return statement.toString();
+	}
+}
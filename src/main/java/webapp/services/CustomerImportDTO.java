@@ -0,0 +1,21 @@
+package webapp.services;
+
+import java.util.List;
+
+public class CustomerImportDTO {
+
+	/**
+	 * Number of customers added to the database
+	 */
+	public final int imported;
+
+	/**
+	 * The records that were not imported, in input order
+	 */
+	public final List<ImportRejectionDTO> rejections;
+
+	public CustomerImportDTO(int imported, List<ImportRejectionDTO> rejections) {
+		this.imported = imported;
+		this.rejections = rejections;
+	}
+}
@@ -0,0 +1,31 @@
+package webapp.services;
+
+import java.util.List;
+
+public class CustomerProfileDTO {
+
+	public final CustomerDTO customer;
+
+	/**
+	 * The customer's sales aggregates
+	 */
+	public final CustomerSalesSummaryDTO salesSummary;
+
+	/**
+	 * The customer's addresses, in the order they were added
+	 */
+	public final List<AddressDTO> addrs;
+
+	/**
+	 * The customer's open sales (empty unless asked for)
+	 */
+	public final List<SaleDTO> openSales;
+
+	public CustomerProfileDTO(CustomerDTO customer, CustomerSalesSummaryDTO salesSummary, List<AddressDTO> addrs, 
+			List<SaleDTO> openSales) {
+		this.customer = customer;
+		this.salesSummary = salesSummary;
+		this.addrs = addrs;
+		this.openSales = openSales;
+	}
+}
@@ -0,0 +1,37 @@
+package webapp.services;
+
+import java.util.Date;
+
+public class CustomerSalesSummaryDTO {
+
+	public final int customerVat;
+
+	/**
+	 * How many sales the customer has
+	 */
+	public final int numSales;
+
+	public final int openSales;
+
+	public final int closedSales;
+
+	/**
+	 * The sum of the totals of the customer's sales
+	 */
+	public final double total;
+
+	/**
+	 * The date of the customer's last sale (null when it has no sales)
+	 */
+	public final Date lastSaleDate;
+
+	public CustomerSalesSummaryDTO(int customerVat, int numSales, int openSales, int closedSales, double total, 
+			Date lastSaleDate) {
+		this.customerVat = customerVat;
+		this.numSales = numSales;
+		this.openSales = openSales;
+		this.closedSales = closedSales;
+		this.total = total;
+		this.lastSaleDate = lastSaleDate;
+	}
+}
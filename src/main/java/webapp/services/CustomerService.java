@@ -1,12 +1,25 @@
 package webapp.services;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import webapp.persistence.AddressRowDataGateway;
 import webapp.persistence.CustomerFinder;
+import webapp.persistence.CustomerProfile;
 import webapp.persistence.CustomerRowDataGateway;
+import webapp.persistence.CustomerSalesSummaryRowDataGateway;
+import webapp.persistence.DataSource;
 import webapp.persistence.PersistenceException;
+import webapp.persistence.SaleDeliveryRowDataGateway;
+import webapp.persistence.SaleLineRowDataGateway;
+import webapp.persistence.SaleRowDataGateway;
 
 
 /**
@@ -32,40 +45,278 @@ public enum CustomerService {
 		}
 	}
 	
-	public void addCustomer(int vat, String designation, int phoneNumber) throws ApplicationException {
+	/**
+	 * Adds a customer
+	 * 
+	 * @return The customer added, with the id the database gave it
+	 * @throws ApplicationException In case the VAT number is invalid or the
+	 * customer cannot be added
+	 */
+	public CustomerDTO addCustomer(int vat, String designation, int phoneNumber) throws ApplicationException {
 		if (!isValidVAT (vat))
 			throw new ApplicationException ("Invalid VAT number: " + vat);
 		else try {
 			CustomerRowDataGateway customer = new CustomerRowDataGateway(vat, designation, phoneNumber);
-			customer.insert();
-			
+			return new CustomerDTO(customer.insert(), vat, designation, phoneNumber);
 		} catch (PersistenceException e) {
 				throw new ApplicationException ("Can't add customer with vat number " + vat + ".", e);
 		}
 	}
 	
+	/**
+	 * Imports customers in bulk from CSV records (vat,designation,phone), one per 
+	 * line. A first line that does not start with a number is taken as a header, 
+	 * and designations may be double-quoted to contain commas.
+	 * 
+	 * The records are validated and inserted in chunks of batchSize, each chunk 
+	 * as a single JDBC batch in its own transaction. Invalid records, VAT numbers 
+	 * repeated in the input and VAT numbers already in the database are rejected 
+	 * without stopping the import.
+	 * 
+	 * @param input The CSV records
+	 * @param batchSize How many customers to insert per batch (and transaction)
+	 * @return How many customers were imported and the rejected records
+	 * @throws ApplicationException In case the input cannot be read or the 
+	 * database fails (the chunks already committed stay imported)
+	 */
+	public CustomerImportDTO importCustomers(Reader input, int batchSize) throws ApplicationException {
+		if (batchSize < 1)
+			throw new ApplicationException ("Invalid batch size: " + batchSize);
+		List<ImportRejectionDTO> rejections = new ArrayList<>();
+		Set<Integer> vats = new HashSet<>();
+		List<ImportRecord> chunk = new ArrayList<>(batchSize);
+		int imported = 0;
+		try (BufferedReader br = new BufferedReader(input)) {
+			String record;
+			int line = 0;
+			while ((record = br.readLine()) != null) {
+				line++;
+				if (record.trim().isEmpty() || (line == 1 && isHeader(record)))
+					continue;
+				ImportRecord r = new ImportRecord(line, record);
+				String reason = r.parse();
+				if (reason == null && !vats.add(r.vat))
+					reason = "VAT number " + r.vat + " repeated in the input";
+				if (reason != null) {
+					rejections.add(new ImportRejectionDTO(line, record, reason));
+					continue;
+				}
+				chunk.add(r);
+				if (chunk.size() == batchSize) {
+					imported += importChunk(chunk, rejections);
+					chunk.clear();
+				}
+			}
+			imported += importChunk(chunk, rejections);
+		} catch (IOException e) {
+			throw new ApplicationException ("Error reading the customers to import.", e);
+		}
+		rejections.sort(Comparator.comparingInt(r -> r.line));
+		return new CustomerImportDTO(imported, rejections);
+	}
+
+	/**
+	 * Inserts a chunk of valid records in one transaction, first as a single 
+	 * batch and, if the database refuses some record, one at a time to find out 
+	 * which.
+	 * 
+	 * @return The number of customers inserted
+	 */
+	private int importChunk(List<ImportRecord> chunk, List<ImportRejectionDTO> rejections) throws ApplicationException {
+		if (chunk.isEmpty())
+			return 0;
+		List<CustomerRowDataGateway> customers = new ArrayList<>(chunk.size());
+		for (ImportRecord r : chunk)
+			customers.add(new CustomerRowDataGateway(r.vat, r.designation, r.phoneNumber));
+		try {
+			DataSource.INSTANCE.beginTransaction();
+			try {
+				new CustomerRowDataGateway().insertAll(customers);
+				DataSource.INSTANCE.commit();
+				return chunk.size();
+			} catch (PersistenceException e) {
+				DataSource.INSTANCE.rollback();
+			}
+			DataSource.INSTANCE.beginTransaction();
+			CustomerFinder finder = new CustomerFinder();
+			int inserted = 0;
+			for (int i = 0; i < chunk.size(); i++) {
+				ImportRecord r = chunk.get(i);
+				if (finder.existsCustomerWithVATNumber(r.vat)) {
+					rejections.add(new ImportRejectionDTO(r.line, r.record, "Customer with vat number " + r.vat + " already exists"));
+					continue;
+				}
+				try {
+					customers.get(i).insert();
+					inserted++;
+				} catch (PersistenceException e) {
+					rejections.add(new ImportRejectionDTO(r.line, r.record, "Can't add customer: " + (e.getCause() != null ? e.getCause() : e).getMessage()));
+				}
+			}
+			DataSource.INSTANCE.commit();
+			return inserted;
+		} catch (PersistenceException e) {
+			rollback();
+			throw new ApplicationException ("Error importing customers.", e);
+		}
+	}
+
+	private static boolean isHeader(String record) {
+		return !Character.isDigit(record.trim().charAt(0));
+	}
+
+	/**
+	 * A customer record of an import
+	 */
+	private class ImportRecord {
+		final int line;
+		final String record;
+		int vat;
+		String designation;
+		int phoneNumber;
+
+		ImportRecord(int line, String record) {
+			this.line = line;
+			this.record = record;
+		}
+
+		/**
+		 * Splits and validates the record
+		 * 
+		 * @return Why the record is invalid, or null if it is valid
+		 */
+		String parse() {
+			List<String> fields = splitFields(record);
+			if (fields.size() != 3)
+				return "Expected 3 fields (vat, designation, phone) but found " + fields.size();
+			try {
+				vat = Integer.parseInt(fields.get(0));
+			} catch (NumberFormatException e) {
+				return "Invalid VAT number: " + fields.get(0);
+			}
+			if (!isValidVAT(vat))
+				return "Invalid VAT number: " + vat;
+			designation = fields.get(1);
+			if (designation.isEmpty())
+				return "Missing designation";
+			if (designation.length() > 50)
+				return "Designation longer than 50 characters";
+			try {
+				phoneNumber = Integer.parseInt(fields.get(2));
+			} catch (NumberFormatException e) {
+				return "Invalid phone number: " + fields.get(2);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Splits a CSV record by its commas, except those inside double quotes 
+	 * (a quote inside quotes is written twice).
+	 */
+	private static List<String> splitFields(String record) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < record.length(); i++) {
+			char c = record.charAt(i);
+			if (quoted) {
+				if (c != '"')
+					field.append(c);
+				else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+					field.append(c);
+					i++;
+				} else
+					quoted = false;
+			} else if (c == '"')
+				quoted = true;
+			else if (c == ',') {
+				fields.add(field.toString().trim());
+				field.setLength(0);
+			} else
+				field.append(c);
+		}
+		fields.add(field.toString().trim());
+		return fields;
+	}
+	
 	public CustomersDTO getAllCustomers() throws ApplicationException {
 		try {
-			List<CustomerRowDataGateway> customers = new CustomerRowDataGateway().getAllCustomers();
 			List<CustomerDTO> list = new ArrayList<CustomerDTO>();
-			for(CustomerRowDataGateway cust : customers) {
+			for(CustomerRowDataGateway cust : new CustomerRowDataGateway().getAllCustomers()) {
 				list.add(new CustomerDTO(cust.getCustomerId(), cust.getVAT(), 
 					cust.getDesignation(), cust.getPhoneNumber()));
 			}
-			CustomersDTO c = new CustomersDTO(list);
-			return c;
+			return new CustomersDTO(list);
 		} catch (PersistenceException e) {
 				throw new ApplicationException ("Error getting all customers", e);
 		}
 	}
 	
-	public void addAddressToCustomer(int customerVat, String addr) throws ApplicationException {
+	/**
+	 * Gets a page of customers, in id order.
+	 * 
+	 * @param afterId The id of the last customer of the previous page (0 for the first page)
+	 * @param pageSize The maximum number of customers in the page
+	 * @return The customers of the page, and whether there are more after them
+	 * @throws ApplicationException In case the page size is not positive or
+	 * the customers cannot be read
+	 */
+	public CustomersDTO getCustomersPage(int afterId, int pageSize) throws ApplicationException {
+		if (pageSize <= 0)
+			throw new ApplicationException ("Invalid page size: " + pageSize);
+		try {
+			// one customer more than asked for tells whether there is a next page
+			List<CustomerRowDataGateway> customers = new CustomerRowDataGateway().getCustomersPage(afterId, pageSize + 1);
+			List<CustomerDTO> list = new ArrayList<CustomerDTO>();
+			for(CustomerRowDataGateway cust : customers.subList(0, Math.min(pageSize, customers.size()))) {
+				list.add(new CustomerDTO(cust.getCustomerId(), cust.getVAT(), 
+					cust.getDesignation(), cust.getPhoneNumber()));
+			}
+			return new CustomersDTO(list, customers.size() > pageSize);
+		} catch (PersistenceException e) {
+				throw new ApplicationException ("Error getting customers", e);
+		}
+	}
+	
+	/**
+	 * Gets the page of customers before a given one, in id order.
+	 * 
+	 * @param beforeId The id of the first customer of the following page
+	 * @param pageSize The maximum number of customers in the page
+	 * @return The customers of the page, and whether there are more before them
+	 * @throws ApplicationException In case the page size is not positive or
+	 * the customers cannot be read
+	 */
+	public CustomersDTO getCustomersPageBefore(int beforeId, int pageSize) throws ApplicationException {
+		if (pageSize <= 0)
+			throw new ApplicationException ("Invalid page size: " + pageSize);
+		try {
+			// one customer more than asked for tells whether there is a previous page
+			List<CustomerRowDataGateway> customers = new CustomerRowDataGateway().getCustomersPageBefore(beforeId, pageSize + 1);
+			List<CustomerDTO> list = new ArrayList<CustomerDTO>();
+			for(CustomerRowDataGateway cust : customers.subList(0, Math.min(pageSize, customers.size()))) {
+				list.add(new CustomerDTO(cust.getCustomerId(), cust.getVAT(), 
+					cust.getDesignation(), cust.getPhoneNumber()));
+			}
+			Collections.reverse(list);
+			return new CustomersDTO(list, customers.size() > pageSize);
+		} catch (PersistenceException e) {
+				throw new ApplicationException ("Error getting customers", e);
+		}
+	}
+	
+	/**
+	 * Adds an address to a customer
+	 * 
+	 * @return The new address, with the id the database generated for it
+	 */
+	public AddressDTO addAddressToCustomer(int customerVat, String addr) throws ApplicationException {
 		if (!isValidVAT (customerVat))
 			throw new ApplicationException ("Invalid VAT number: " + customerVat);
 		else try {
 			AddressRowDataGateway address = new AddressRowDataGateway(addr, customerVat);
-			address.insert();
-			
+			return new AddressDTO(address.insert(), customerVat, addr);
 		} catch (PersistenceException e) {
 				throw new ApplicationException ("Can't add the address /n" + addr + "/nTo customer with vat number " + customerVat + ".", e);
 		}
@@ -87,46 +338,145 @@ public enum CustomerService {
 	
 	
 
-	public void updateCustomerPhone(int vat, int phoneNumber) throws ApplicationException {
+	/**
+	 * Gets a customer together with its addresses and, optionally, its open
+	 * sales, with a single query.
+	 * 
+	 * @param vat The customer's VAT number
+	 * @param withOpenSales Whether to get the customer's open sales too
+	 * @return The customer's profile
+	 * @throws ApplicationException In case the VAT number is invalid or the
+	 * customer does not exist
+	 */
+	public CustomerProfileDTO getCustomerProfile(int vat, boolean withOpenSales) throws ApplicationException {
+		if (!isValidVAT (vat))
+			throw new ApplicationException ("Invalid VAT number: " + vat);
+		else try {
+			return toProfileDTO(new CustomerFinder().getCustomerProfile(vat, withOpenSales));
+		} catch (PersistenceException e) {
+				throw new ApplicationException ("Customer with vat number " + vat + " not found.", e);
+		}
+	}
+	
+	/**
+	 * Adds an address to a customer and gets the customer's profile (with the
+	 * new address), in one transaction. The address is not added when the
+	 * customer does not exist.
+	 * 
+	 * @param vat The customer's VAT number
+	 * @param addr The address to add
+	 * @return The customer's profile, without open sales
+	 * @throws ApplicationException In case the VAT number is invalid, the
+	 * customer does not exist or the address cannot be added
+	 */
+	public CustomerProfileDTO addAddressAndGetProfile(int vat, String addr) throws ApplicationException {
+		if (!isValidVAT (vat))
+			throw new ApplicationException ("Invalid VAT number: " + vat);
+		else try {
+			DataSource.INSTANCE.beginTransaction();
+			new AddressRowDataGateway(addr, vat).insert();
+			CustomerProfile profile = new CustomerFinder().getCustomerProfile(vat, false);
+			DataSource.INSTANCE.commit();
+			return toProfileDTO(profile);
+		} catch (PersistenceException e) {
+				rollback();
+				throw new ApplicationException ("Can't add the address /n" + addr + "/nTo customer with vat number " + vat + ".", e);
+		}
+	}
+	
+	private CustomerProfileDTO toProfileDTO(CustomerProfile profile) {
+		CustomerRowDataGateway customer = profile.getCustomer();
+		List<AddressDTO> addrs = new ArrayList<>();
+		for (AddressRowDataGateway addr : profile.getAddresses())
+			addrs.add(new AddressDTO(addr.getId(), addr.getCustVat(), addr.getAddress()));
+		List<SaleDTO> openSales = new ArrayList<>();
+		for (SaleRowDataGateway sl : profile.getOpenSales())
+			openSales.add(new SaleDTO(sl.getId(), sl.getData(), sl.getTotal(), sl.getStatusId(), sl.getCustomerVat()));
+		return new CustomerProfileDTO(new CustomerDTO(customer.getCustomerId(), customer.getVAT(), 
+				customer.getDesignation(), customer.getPhoneNumber()), 
+				SaleService.toSummaryDTO(profile.getSalesSummary()), addrs, openSales);
+	}
+	
+	/**
+	 * Updates a customer's phone number with a single statement. The updated
+	 * customer normally comes from the customer cache, which the update
+	 * writes through to; only a customer not cached yet is read again.
+	 * 
+	 * @param vat The customer's VAT number
+	 * @param phoneNumber The new phone number
+	 * @return The updated customer
+	 * @throws ApplicationException In case the VAT number is invalid or the
+	 * customer does not exist
+	 */
+	public CustomerDTO updateCustomerPhone(int vat, int phoneNumber) throws ApplicationException {
 		if (!isValidVAT (vat))
 			throw new ApplicationException ("Invalid VAT number: " + vat);
 		else try {
+			new CustomerRowDataGateway().updatePhoneNumber(vat, phoneNumber);
 			CustomerRowDataGateway customer = new CustomerFinder().getCustomerByVATNumber(vat);
-			customer.setPhoneNumber(phoneNumber);
-			customer.updatePhoneNumber();
+			return new CustomerDTO(customer.getCustomerId(), customer.getVAT(), 
+					customer.getDesignation(), customer.getPhoneNumber());
 		} catch (PersistenceException e) {
 				throw new ApplicationException ("Customer with vat number " + vat + " not found.", e);
 		}
 	}
 	
 	public boolean hasClient(int vat) throws ApplicationException {	
-		CustomersDTO customersDTO = INSTANCE.getAllCustomers();
-		
-		for(CustomerDTO customer : customersDTO.customers)
-			if (customer.vat == vat)
-				return true;			
-		return false;
+		try {
+			return new CustomerFinder().existsCustomerWithVATNumber(vat);
+		} catch (PersistenceException e) {
+				throw new ApplicationException ("Error checking customer with vat number " + vat + ".", e);
+		}
 	}
 	
 	public int getFirstCustomerVat() throws ApplicationException{
-		CustomersDTO customersDTO = INSTANCE.getAllCustomers();
+		CustomersDTO customersDTO = getCustomersPage(0, 1);
 		if(customersDTO.customers.size() > 0)
 			return customersDTO.customers.get(0).vat;	
 		throw new ApplicationException("No customer in the database");
 	}
 	
+	/**
+	 * Removes a customer together with its deliveries, addresses and sales
+	 * (and their lines and summary).
+	 * Each table is cleared with a single statement and everything happens
+	 * in one transaction.
+	 * 
+	 * @param vat The customer's VAT number
+	 * @throws ApplicationException In case the customer does not exist or
+	 * the removal fails (nothing is removed then).
+	 */
 	public void removeCustomer(int vat) throws ApplicationException {
 		if (!isValidVAT (vat))
 			throw new ApplicationException ("Invalid VAT number: " + vat);
 		else try {
+			DataSource.INSTANCE.beginTransaction();
 			CustomerRowDataGateway customer = new CustomerFinder().getCustomerByVATNumber(vat);
+			new SaleDeliveryRowDataGateway().removeSaleDeliveries(vat);
+			new AddressRowDataGateway().removeCustomerAddresses(vat);
+			new SaleLineRowDataGateway().removeSaleLinesByCustomerVat(vat);
+			new CustomerSalesSummaryRowDataGateway().removeByCustomerVat(vat);
+			new SaleRowDataGateway().removeSalesByCustomerVat(vat);
 			customer.removeCustomer();
-			SaleService.INSTANCE.removeSalesByVAT(vat);
+			DataSource.INSTANCE.commit();
 		} catch (PersistenceException e) {
+				rollback();
 				throw new ApplicationException ("Customer with vat number " + vat + " doesn't exist.", e);
 		}
 	}
 
+	/**
+	 * Rolls back the current transaction, if possible. Used when a transaction
+	 * script fails, so its own error is the one reported.
+	 */
+	private void rollback() {
+		try {
+			DataSource.INSTANCE.rollback();
+		} catch (PersistenceException e) {
+			// the connection is reset when returned to the pool
+		}
+	}
+
 	 
 	/**
 	 * Checks if a VAT number is valid.
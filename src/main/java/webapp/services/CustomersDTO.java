@@ -6,7 +6,17 @@ public class CustomersDTO {
 
 	public final List<CustomerDTO> customers;
 	
+	/**
+	 * Whether there are more customers after these (when this is a page of them)
+	 */
+	public final boolean hasMore;
+	
 	public CustomersDTO(List<CustomerDTO> customers) {
+		this(customers, false);
+	}
+	
+	public CustomersDTO(List<CustomerDTO> customers, boolean hasMore) {
 		this.customers = customers;
+		this.hasMore = hasMore;
 	}
 }
@@ -0,0 +1,25 @@
+package webapp.services;
+
+public class ImportRejectionDTO {
+
+	/**
+	 * Line of the input where the rejected record is (starting at 1)
+	 */
+	public final int line;
+
+	/**
+	 * The rejected record, as read
+	 */
+	public final String record;
+
+	/**
+	 * Why the record was rejected
+	 */
+	public final String reason;
+
+	public ImportRejectionDTO(int line, String record, String reason) {
+		this.line = line;
+		this.record = record;
+		this.reason = reason;
+	}
+}
@@ -34,7 +34,7 @@ public class SaleDTO {
 	public SaleDTO(int id, Date date, Double total, String statusId, int customerVat) {
 		this.id = id;
 		this.data = date;
-		this.total = 0.0;
+		this.total = total;
 		this.statusId = statusId;
 		this.customerVat = customerVat;
 	}
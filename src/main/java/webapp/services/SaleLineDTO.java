@@ -0,0 +1,38 @@
+package webapp.services;
+
+public class SaleLineDTO {
+
+	/**
+	 * Line's internal identification (unique, primary key, sequential)
+	 * Generated by the database engine.
+	 */
+	public final int id;
+
+	/**
+	 * The id of the line's sale
+	 */
+	public final int saleId;
+
+	/**
+	 * The product sold
+	 */
+	public final String product;
+
+	/**
+	 * How many units of the product were sold
+	 */
+	public final int quantity;
+
+	/**
+	 * The price of each unit
+	 */
+	public final double price;
+
+	public SaleLineDTO(int id, int saleId, String product, int quantity, double price) {
+		this.id = id;
+		this.saleId = saleId;
+		this.product = product;
+		this.quantity = quantity;
+		this.price = price;
+	}
+}
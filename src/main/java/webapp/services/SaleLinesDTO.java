@@ -0,0 +1,18 @@
+package webapp.services;
+
+import java.util.List;
+
+public class SaleLinesDTO {
+
+	/**
+	 * The sale the lines belong to, with its total
+	 */
+	public final SaleDTO sale;
+
+	public final List<SaleLineDTO> lines;
+
+	public SaleLinesDTO(SaleDTO sale, List<SaleLineDTO> lines) {
+		this.sale = sale;
+		this.lines = lines;
+	}
+}
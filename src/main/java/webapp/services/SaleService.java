@@ -1,11 +1,16 @@
 package webapp.services;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import webapp.persistence.CustomerSalesSummaryRowDataGateway;
+import webapp.persistence.DataSource;
 import webapp.persistence.PersistenceException;
+import webapp.persistence.RowCursor;
 import webapp.persistence.SaleDeliveryRowDataGateway;
+import webapp.persistence.SaleLineRowDataGateway;
 import webapp.persistence.SaleRowDataGateway;
 import webapp.persistence.SaleStatus;
 
@@ -51,19 +56,50 @@ public enum SaleService {
 		}
 	}
 	
+	/**
+	 * Gets a page of sales, newest first.
+	 * 
+	 * @param beforeId The id of the last sale of the previous page (0 for the first page)
+	 * @param pageSize The maximum number of sales in the page
+	 * @return The sales of the page, and whether there are more after them
+	 * @throws ApplicationException In case the page size is not positive or
+	 * the sales cannot be read
+	 */
+	public SalesDTO getSalesPage(int beforeId, int pageSize) throws ApplicationException {
+		if (pageSize <= 0)
+			throw new ApplicationException ("Invalid page size: " + pageSize);
+		try {
+			// one sale more than asked for tells whether there is a next page
+			List<SaleRowDataGateway> sales = new SaleRowDataGateway().getSalesPage(
+					beforeId > 0 ? beforeId : Integer.MAX_VALUE, pageSize + 1);
+			List<SaleDTO> list = new ArrayList<>();
+			for(SaleRowDataGateway sl : sales.subList(0, Math.min(pageSize, sales.size()))) {
+				list.add(new SaleDTO(sl.getId(), sl.getData(),sl.getTotal(), sl.getStatusId(), sl.getCustomerVat()));
+			}
+			return new SalesDTO(list, sales.size() > pageSize);
+		} catch (PersistenceException e) {
+				throw new ApplicationException ("Error loading sales.", e);
+		}
+	}
+	
 	public boolean hasSale(int id) throws ApplicationException{
-		SalesDTO salesDTO = INSTANCE.getAllSales();
-		for(SaleDTO sale : salesDTO.sales)
-			if (sale.id == id)
-				return true;			
-		return false;
+		try {
+			return new SaleRowDataGateway().existsById(id);
+		} catch (PersistenceException e) {
+				throw new ApplicationException ("Error checking sale with id " + id + ".", e);
+		}
 	}
 	
-	public void addSale(int customerVat) throws ApplicationException {
+	/**
+	 * Adds an open sale to a customer
+	 * 
+	 * @return The new sale, with the id the database generated for it
+	 */
+	public SaleDTO addSale(int customerVat) throws ApplicationException {
 		try {
 			SaleRowDataGateway sale = new SaleRowDataGateway(customerVat, new Date());
 			sale.insert();
-			
+			return toDTO(sale);
 		} catch (PersistenceException e) {
 				throw new ApplicationException ("Can't add customer with vat number " + customerVat + ".", e);
 		}
@@ -80,6 +116,204 @@ public enum SaleService {
 	}
 	
 	
+	/**
+	 * Closes the open sales among the given ones, in one transaction
+	 * 
+	 * @param ids The ids of the sales to close
+	 * @return The number of sales closed (the ones already closed, or
+	 * missing, are skipped)
+	 * @throws ApplicationException When the sales cannot be closed (none is)
+	 */
+	public int closeSales(Collection<Integer> ids) throws ApplicationException {
+		try {
+			DataSource.INSTANCE.beginTransaction();
+			int closed = new SaleRowDataGateway().closeSales(ids);
+			DataSource.INSTANCE.commit();
+			return closed;
+		} catch (PersistenceException e) {
+			rollback();
+			throw new ApplicationException ("Can't close the " + ids.size() + " sales.", e);
+		}
+	}
+	
+	/**
+	 * Closes all the open sales of a customer
+	 * 
+	 * @param vat The customer's VAT number
+	 * @return The number of sales closed
+	 * @throws ApplicationException When the VAT number is invalid or the sales
+	 * cannot be closed
+	 */
+	public int closeSalesOfCustomer(int vat) throws ApplicationException {
+		if (!isValidVAT (vat))
+			throw new ApplicationException ("Invalid VAT number: " + vat);
+		else try {
+			DataSource.INSTANCE.beginTransaction();
+			int closed = new SaleRowDataGateway().closeSalesByCustomerVat(vat);
+			DataSource.INSTANCE.commit();
+			return closed;
+		} catch (PersistenceException e) {
+			rollback();
+			throw new ApplicationException ("Can't close the sales of customer " + vat + ".", e);
+		}
+	}
+	
+	/**
+	 * Closes all the open sales made between two dates
+	 * 
+	 * @param from The first day of the range
+	 * @param to The last day of the range (inclusive)
+	 * @return The number of sales closed
+	 * @throws ApplicationException When the range is empty or the sales
+	 * cannot be closed
+	 */
+	public int closeSalesBetween(Date from, Date to) throws ApplicationException {
+		if (from.after(to))
+			throw new ApplicationException ("Invalid date range: " + from + " is after " + to);
+		try {
+			DataSource.INSTANCE.beginTransaction();
+			int closed = new SaleRowDataGateway().closeSalesBetween(from, to);
+			DataSource.INSTANCE.commit();
+			return closed;
+		} catch (PersistenceException e) {
+			rollback();
+			throw new ApplicationException ("Can't close the sales between " + from + " and " + to + ".", e);
+		}
+	}
+	
+	/**
+	 * Gets a sale together with its lines. The sale's total is read as
+	 * stored, not summed from the lines.
+	 * 
+	 * @param saleId The id of the sale
+	 * @throws ApplicationException When the sale does not exist
+	 */
+	public SaleLinesDTO getSaleLines(int saleId) throws ApplicationException {
+		try {
+			SaleRowDataGateway sale = new SaleRowDataGateway().getSaleById(saleId);
+			List<SaleLineDTO> list = new ArrayList<>();
+			for (SaleLineRowDataGateway line : new SaleLineRowDataGateway().getSaleLines(saleId))
+				list.add(toDTO(line));
+			return new SaleLinesDTO(toDTO(sale), list);
+		} catch (PersistenceException e) {
+			throw new ApplicationException ("Sale with id " + saleId + " doesn't exist.", e);
+		}
+	}
+	
+	/**
+	 * Adds a line to an open sale and the line's amount to the sale's total,
+	 * in one transaction
+	 * 
+	 * @param saleId The id of the sale
+	 * @param product The product sold
+	 * @param quantity How many units of the product were sold
+	 * @param price The price of each unit
+	 * @return The new line, with the id the database generated for it
+	 * @throws ApplicationException When the line is invalid, or the sale does
+	 * not exist or is closed
+	 */
+	public SaleLineDTO addSaleLine(int saleId, String product, int quantity, double price) throws ApplicationException {
+		if (product == null || product.trim().isEmpty())
+			throw new ApplicationException ("A sale line needs a product.");
+		if (quantity <= 0 || price < 0)
+			throw new ApplicationException ("Invalid quantity or price: " + quantity + " x " + price);
+		try {
+			DataSource.INSTANCE.beginTransaction();
+			SaleRowDataGateway sale = new SaleRowDataGateway().getSaleById(saleId);
+			SaleLineRowDataGateway line = new SaleLineRowDataGateway(saleId, product.trim(), quantity, price);
+			sale.addToTotal(line.getAmount());
+			line.insert();
+			DataSource.INSTANCE.commit();
+			return toDTO(line);
+		} catch (PersistenceException e) {
+			rollback();
+			throw new ApplicationException ("Can't add a line to the open sale " + saleId + ".", e);
+		}
+	}
+	
+	/**
+	 * Removes a line from an open sale and takes the line's amount from the
+	 * sale's total, in one transaction
+	 * 
+	 * @param lineId The id of the line
+	 * @throws ApplicationException When the line does not exist or its sale is closed
+	 */
+	public void removeSaleLine(int lineId) throws ApplicationException {
+		try {
+			DataSource.INSTANCE.beginTransaction();
+			SaleLineRowDataGateway line = new SaleLineRowDataGateway().getSaleLineById(lineId);
+			SaleRowDataGateway sale = new SaleRowDataGateway().getSaleById(line.getSaleId());
+			sale.addToTotal(-line.getAmount());
+			line.removeSaleLine();
+			DataSource.INSTANCE.commit();
+		} catch (PersistenceException e) {
+			rollback();
+			throw new ApplicationException ("Can't remove the sale line " + lineId + ".", e);
+		}
+	}
+	
+	private static SaleDTO toDTO(SaleRowDataGateway sale) {
+		return new SaleDTO(sale.getId(), sale.getData(), sale.getTotal(), sale.getStatusId(), sale.getCustomerVat());
+	}
+	
+	static CustomerSalesSummaryDTO toSummaryDTO(CustomerSalesSummaryRowDataGateway summary) {
+		return new CustomerSalesSummaryDTO(summary.getCustomerVat(), summary.getNumSales(), summary.getOpenSales(), 
+				summary.getClosedSales(), summary.getTotal(), summary.getLastSaleDate());
+	}
+	
+	private static SaleLineDTO toDTO(SaleLineRowDataGateway line) {
+		return new SaleLineDTO(line.getId(), line.getSaleId(), line.getProduct(), line.getQuantity(), line.getPrice());
+	}
+	
+	/**
+	 * Gets the sales aggregates of a customer (number of sales, open and
+	 * closed, their total and the date of the last one). They are kept up
+	 * to date as sales change, so this is a single-row lookup however many
+	 * sales the customer has.
+	 * 
+	 * @param vat The customer's VAT number
+	 * @throws ApplicationException When the VAT number is invalid or the
+	 * aggregates cannot be read
+	 */
+	public CustomerSalesSummaryDTO getCustomerSalesSummary(int vat) throws ApplicationException {
+		if (!isValidVAT (vat))
+			throw new ApplicationException ("Invalid VAT number: " + vat);
+		else try {
+			return toSummaryDTO(new CustomerSalesSummaryRowDataGateway().getByCustomerVat(vat));
+		} catch (PersistenceException e) {
+			throw new ApplicationException ("Can't get the sales summary of customer " + vat + ".", e);
+		}
+	}
+	
+	/**
+	 * The number of sale rows the driver fetches at a time when streaming sales
+	 */
+	private static final int SALES_FETCH_SIZE = 500;
+	
+	/**
+	 * Iterates over the sales made between two dates, in date order, without
+	 * loading them all into memory. The cursor reads from the thread's
+	 * database connection, so it must be consumed (and closed) before the
+	 * connection is released.
+	 * 
+	 * @param from The first day of the range
+	 * @param to The last day of the range (inclusive)
+	 * @param status The status of the sales to get (null for any)
+	 * @return A cursor over the sales, to be closed once consumed
+	 * @throws ApplicationException When the range is empty or the sales
+	 * cannot be queried
+	 */
+	public RowCursor<SaleDTO> streamSalesBetween(Date from, Date to, SaleStatus status) throws ApplicationException {
+		if (from.after(to))
+			throw new ApplicationException ("Invalid date range: " + from + " is after " + to);
+		try {
+			return new SaleRowDataGateway().getSalesBetween(from, to, status, SALES_FETCH_SIZE)
+					.map(SaleService::toDTO);
+		} catch (PersistenceException e) {
+			throw new ApplicationException ("Error getting the sales between " + from + " and " + to, e);
+		}
+	}
+	
 	public SalesDeliveryDTO getSalesDeliveryByVat (int vat) throws ApplicationException {
 		try {
 			List<SaleDeliveryRowDataGateway> salesd = new SaleDeliveryRowDataGateway().getAllSaleDelivery(vat);
@@ -94,13 +328,16 @@ public enum SaleService {
 		}
 	}
 	
-	public int addSaleDelivery(int sale_id, int addr_id) throws ApplicationException {
+	/**
+	 * Adds a delivery of a sale to one of its customer's addresses
+	 * 
+	 * @return The new delivery, with the id the database generated for it
+	 */
+	public SaleDeliveryDTO addSaleDelivery(int sale_id, int addr_id) throws ApplicationException {
 		try {
-			SaleRowDataGateway s = new SaleRowDataGateway().getSaleById(sale_id);
-			SaleDeliveryRowDataGateway sale = new SaleDeliveryRowDataGateway(sale_id, s.getCustomerVat() ,addr_id);
-			sale.insert();
-			return sale.getCustomerVat();
-			
+			SaleDeliveryRowDataGateway delivery = new SaleDeliveryRowDataGateway().insertDeliveryOfSale(sale_id, addr_id);
+			return new SaleDeliveryDTO(delivery.getId(), sale_id, delivery.getCustomerVat(), addr_id);
+
 		} catch (PersistenceException e) {
 				throw new ApplicationException ("Can't add address to cutomer.", e);
 		}
@@ -141,7 +378,9 @@ public enum SaleService {
 	}
 	
 	/**
-	 * Removes sales in the Database given a certain customer vat
+	 * Removes sales in the Database given a certain customer vat, together 
+	 * with their lines, deliveries and summary, in one transaction. The summary
+	 * row is recreated by the next sale of the customer
 	 * 
 	 * @param vat the customer vat to check
 	 */
@@ -149,12 +388,28 @@ public enum SaleService {
         if (!isValidVAT (vat))
             throw new ApplicationException ("Invalid VAT number: " + vat);
         else try {
-            List<SaleRowDataGateway> sales = new SaleRowDataGateway().getAllSales(vat);
-            for(SaleRowDataGateway sale: sales)
-                sale.removeSale();
+            DataSource.INSTANCE.beginTransaction();
+            new SaleDeliveryRowDataGateway().removeSaleDeliveries(vat);
+            new SaleLineRowDataGateway().removeSaleLinesByCustomerVat(vat);
+            new CustomerSalesSummaryRowDataGateway().removeByCustomerVat(vat);
+            new SaleRowDataGateway().removeSalesByCustomerVat(vat);
+            DataSource.INSTANCE.commit();
         } catch (PersistenceException e) {
+                rollback();
                 throw new ApplicationException ("Customer with vat number " + vat + " doesn't exist.", e);
         }
     }
+
+	/**
+	 * Rolls back the current transaction, if possible. Used when a transaction
+	 * script fails, so its own error is the one reported.
+	 */
+	private void rollback() {
+		try {
+			DataSource.INSTANCE.rollback();
+		} catch (PersistenceException e) {
+			// the connection is reset when returned to the pool
+		}
+	}
 	
 }
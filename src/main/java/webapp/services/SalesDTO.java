@@ -5,7 +5,17 @@ import java.util.List;
 public class SalesDTO {
 	public final List<SaleDTO> sales;
 
+	/**
+	 * Whether there are more sales after these (when this is a page of them)
+	 */
+	public final boolean hasMore;
+	
 	public SalesDTO(List<SaleDTO> sales) {
+		this(sales, false);
+	}
+	
+	public SalesDTO(List<SaleDTO> sales, boolean hasMore) {
 		this.sales = sales;
+		this.hasMore = hasMore;
 	}
 }
@@ -10,7 +10,7 @@ import javax.servlet.http.HttpServletResponse;
 import webapp.services.ApplicationException;
 import webapp.services.CustomerService;
 
-@WebServlet("/AddCustomerPageController")
+@WebServlet(urlPatterns = "/AddCustomerPageController", asyncSupported = true)
 public class AddCustomerPageController extends PageController{
 	private static final long serialVersionUID = 1L;
 
@@ -30,11 +30,11 @@ public class AddCustomerPageController extends PageController{
 				int phoneNumber = intValue(phone);
 				cs.addCustomer(vatNumber, designation, phoneNumber);
 				ch.fillWithCustomer(cs.getCustomerByVat(vatNumber));
-				request.getRequestDispatcher("CustomerInfo.jsp").forward(request, response);
+				forward(request, response, "CustomerInfo.jsp");
 			}
 		} catch (ApplicationException e) {
 			ch.addMessage("It was not possible to fulfill the request: " + e.getMessage());
-			request.getRequestDispatcher("CustomerError.jsp").forward(request, response); 
+			forward(request, response, "CustomerError.jsp"); 
 		}
 	}
 }
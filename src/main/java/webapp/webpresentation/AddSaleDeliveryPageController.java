@@ -12,9 +12,10 @@ import webapp.services.ApplicationException;
 import webapp.services.CustomerService;
 import webapp.services.SaleService;
 import webapp.services.SalesDTO;
+import webapp.services.SaleDeliveryDTO;
 import webapp.services.SalesDeliveryDTO;
 
-@WebServlet("/AddSaleDeliveryPageController")
+@WebServlet(urlPatterns = "/AddSaleDeliveryPageController", asyncSupported = true)
 public class AddSaleDeliveryPageController extends PageController{
 	private static final long serialVersionUID = 1L;
 
@@ -39,10 +40,10 @@ public class AddSaleDeliveryPageController extends PageController{
 				if (isInt(sdh, sale, "Invalid Sale Id") && isInt(sdh, addr, "Invalid Address Id")) {
 					int addr_id = intValue(addr);
 					int sale_id = intValue(sale);
-					int customerVat = ss.addSaleDelivery(sale_id, addr_id);
-					SalesDeliveryDTO sdd = ss.getSalesDeliveryByVat(customerVat);
+					SaleDeliveryDTO delivery = ss.addSaleDelivery(sale_id, addr_id);
+					SalesDeliveryDTO sdd = ss.getSalesDeliveryByVat(delivery.customer_vat);
 					sdh.fillWithSalesDelivery(sdd.sales_delivery); 
-					request.getRequestDispatcher("SalesDeliveryInfo.jsp").forward(request, response);
+					forward(request, response, "SalesDeliveryInfo.jsp");
 				}
 			}
 			if(isInt(ash, vat, "Invalid VAT number")) {
@@ -51,11 +52,11 @@ public class AddSaleDeliveryPageController extends PageController{
 				ash.fillWithAddresses(asd.addrs);
 				SalesDTO ssd = ss.getSaleByCustomerVat(vatNumber);
 				ssh.fillWithSales(ssd.sales);
-				request.getRequestDispatcher("addSaleDelivery.jsp").forward(request, response);
+				forward(request, response, "addSaleDelivery.jsp");
 			}
 		} catch (ApplicationException e) {
 			sdh.addMessage("It was not possible to fulfill the request: " + e.getMessage());
-			request.getRequestDispatcher("CustomerError.jsp").forward(request, response); 
+			forward(request, response, "CustomerError.jsp"); 
 		}
 	}
 }
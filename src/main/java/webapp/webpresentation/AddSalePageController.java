@@ -11,7 +11,7 @@ import webapp.services.ApplicationException;
 import webapp.services.SaleService;
 import webapp.services.SalesDTO;
 
-@WebServlet("/AddSalePageController")
+@WebServlet(urlPatterns = "/AddSalePageController", asyncSupported = true)
 public class AddSalePageController extends PageController{
 	private static final long serialVersionUID = 1L;
 
@@ -31,11 +31,11 @@ public class AddSalePageController extends PageController{
 				ss.addSale(vatNumber);
 				SalesDTO s = ss.getSaleByCustomerVat(vatNumber);
 				sh.fillWithSales(s.sales);
-				request.getRequestDispatcher("SalesInfo.jsp").forward(request, response);
+				forward(request, response, "SalesInfo.jsp");
 			}
 		} catch (ApplicationException e) {
 			sh.addMessage("It was not possible to fulfill the request: " + e.getMessage());
-			request.getRequestDispatcher("CustomerError.jsp").forward(request, response); 
+			forward(request, response, "CustomerError.jsp"); 
 		}
 	}
 }
@@ -0,0 +1,204 @@
+package webapp.webpresentation;
+
+import java.io.IOException;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import webapp.persistence.DataSource;
+import webapp.persistence.PersistenceException;
+import webapp.persistence.RecordNotFoundException;
+import webapp.services.AddressDTO;
+import webapp.services.ApplicationException;
+import webapp.services.CustomerDTO;
+import webapp.services.CustomerSalesSummaryDTO;
+import webapp.services.SaleDTO;
+import webapp.services.SaleDeliveryDTO;
+import webapp.services.SaleLineDTO;
+
+/**
+ * An abstract controller of the JSON API. Like the page controllers it
+ * calls the services directly, but instead of filling helpers and
+ * forwarding to a JSP it serializes the DTOs to the response as JSON.
+ *
+ * Resources are addressed by the path after the servlet's mapping (e.g.
+ * /api/customers/197672337/sales); a GET reads a resource and a POST, whose
+ * arguments are form parameters, creates one (answering 201 Created with it)
+ * or performs an action. A service error is answered with 404 Not Found for
+ * a GET and 400 Bad Request for a POST, and a JSON body {"error": message},
+ * unless the database failed (500 Internal Server Error) or no connection to
+ * it became available in time (503 Service Unavailable, to be retried). The
+ * response is only flushed once the request succeeds, so an error can still
+ * replace what was written; if it was committed already the request fails.
+ */
+public abstract class ApiController extends PageController {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void process(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		String[] path = path(request);
+		boolean post = "POST".equals(request.getMethod());
+		JsonWriter json = new JsonWriter(response.getWriter());
+		try {
+			boolean handled = post ? post(path, request, response, json) : get(path, request, json);
+			if (handled)
+				json.flush();
+			else
+				error(response, HttpServletResponse.SC_NOT_FOUND, "No such resource: " + request.getRequestURI());
+		} catch (ApplicationException e) {
+			if (DataSource.INSTANCE.connectionTimedOut())
+				unavailable(response, "The server is busy, please try again");
+			else if (isDatabaseFailure(e)) {
+				log("Error processing " + request.getRequestURI(), e);
+				error(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+			} else
+				error(response, post ? HttpServletResponse.SC_BAD_REQUEST : HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+		} catch (NumberFormatException e) {
+			error(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid number: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return Whether the service failed because the database did, rather
+	 * than because of the request (a missing record or a violated constraint)
+	 */
+	private static boolean isDatabaseFailure(ApplicationException e) {
+		if (!(e.getCause() instanceof PersistenceException) || e.getCause() instanceof RecordNotFoundException)
+			return false;
+		for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+			if (cause instanceof SQLIntegrityConstraintViolationException)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Writes the resource at a path
+	 *
+	 * @param path The segments of the path after the servlet's mapping
+	 * @return Whether there is a resource at the path
+	 * @throws ApplicationException When the resource cannot be read
+	 */
+	protected abstract boolean get(String[] path, HttpServletRequest request, JsonWriter json)
+			throws ApplicationException, IOException;
+
+	/**
+	 * Creates the resource, or performs the action, at a path and writes the result
+	 *
+	 * @param path The segments of the path after the servlet's mapping
+	 * @return Whether there is a resource or action at the path
+	 * @throws ApplicationException When the creation or action fails
+	 */
+	protected abstract boolean post(String[] path, HttpServletRequest request, HttpServletResponse response,
+			JsonWriter json) throws ApplicationException, IOException;
+
+	/**
+	 * @return The segments of the request's path after the servlet's mapping
+	 * (none for the mapping itself)
+	 */
+	private static String[] path(HttpServletRequest request) {
+		String info = request.getPathInfo();
+		if (info == null || info.equals("/"))
+			return new String[0];
+		return info.substring(1).split("/");
+	}
+
+	/**
+	 * @return The value of a required int parameter
+	 * @throws ApplicationException When it is missing or not a number
+	 */
+	protected static int requiredInt(HttpServletRequest request, String name) throws ApplicationException {
+		try {
+			return Integer.parseInt(request.getParameter(name));
+		} catch (NumberFormatException e) {
+			throw new ApplicationException("Missing or invalid " + name + " parameter");
+		}
+	}
+
+	/**
+	 * @return The value of a required parameter
+	 * @throws ApplicationException When it is missing or empty
+	 */
+	protected static String required(HttpServletRequest request, String name) throws ApplicationException {
+		String value = request.getParameter(name);
+		if (value == null || value.trim().isEmpty())
+			throw new ApplicationException("Missing " + name + " parameter");
+		return value;
+	}
+
+	/**
+	 * Replaces what was written with an error document
+	 *
+	 * @throws ServletException When part of the response was sent already,
+	 * so no valid document can be written anymore
+	 */
+	private static void error(HttpServletResponse response, int status, String message) throws ServletException, IOException {
+		if (response.isCommitted())
+			throw new ServletException("Cannot answer " + status + " (" + message + "): the response was already sent in part");
+		response.resetBuffer();
+		response.setStatus(status);
+		new JsonWriter(response.getWriter()).beginObject().name("error").value(message).endObject();
+	}
+
+	// the JSON form of the DTOs
+
+	static void write(JsonWriter json, CustomerDTO customer) throws IOException {
+		json.beginObject()
+			.name("id").value(customer.id)
+			.name("vat").value(customer.vat)
+			.name("designation").value(customer.designation)
+			.name("phoneNumber").value(customer.phoneNumber)
+			.endObject();
+	}
+
+	static void write(JsonWriter json, CustomerSalesSummaryDTO summary) throws IOException {
+		json.beginObject()
+			.name("numSales").value(summary.numSales)
+			.name("openSales").value(summary.openSales)
+			.name("closedSales").value(summary.closedSales)
+			.name("total").value(summary.total)
+			.name("lastSaleDate").value(summary.lastSaleDate)
+			.endObject();
+	}
+
+	static void write(JsonWriter json, AddressDTO address) throws IOException {
+		json.beginObject()
+			.name("id").value(address.id)
+			.name("customerVat").value(address.customerVat)
+			.name("address").value(address.address == null ? null : address.address.trim())
+			.endObject();
+	}
+
+	static void write(JsonWriter json, SaleDTO sale) throws IOException {
+		json.beginObject()
+			.name("id").value(sale.id)
+			.name("date").value(sale.data)
+			.name("total").value(sale.total)
+			.name("status").value(sale.statusId)
+			.name("customerVat").value(sale.customerVat)
+			.endObject();
+	}
+
+	static void write(JsonWriter json, SaleLineDTO line) throws IOException {
+		json.beginObject()
+			.name("id").value(line.id)
+			.name("saleId").value(line.saleId)
+			.name("product").value(line.product)
+			.name("quantity").value(line.quantity)
+			.name("price").value(line.price)
+			.endObject();
+	}
+
+	static void write(JsonWriter json, SaleDeliveryDTO delivery) throws IOException {
+		json.beginObject()
+			.name("id").value(delivery.id)
+			.name("saleId").value(delivery.sale_id)
+			.name("customerVat").value(delivery.customer_vat)
+			.name("addressId").value(delivery.addr_id)
+			.endObject();
+	}
+}
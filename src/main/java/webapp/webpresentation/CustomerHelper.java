@@ -1,6 +1,9 @@
 package webapp.webpresentation;
 
+import java.util.Date;
+
 import webapp.services.CustomerDTO;
+import webapp.services.CustomerSalesSummaryDTO;
 
 /**
  * Helper class to assist in the response of getCustomerByVAT.
@@ -15,6 +18,10 @@ public class CustomerHelper extends Helper {
 	private String designation;
 	private int vat;
 	private int phNumber;
+	private int numSales;
+	private int openSales;
+	private double salesTotal;
+	private Date lastSaleDate;
 	
 	public void setId(int id) {
 		this.id = id;	
@@ -54,4 +61,27 @@ public class CustomerHelper extends Helper {
 		vat = customerDTO.vat;
 		phNumber = customerDTO.phoneNumber;
 	}
+
+	public int getNumSales() {
+		return numSales;
+	}
+
+	public int getOpenSales() {
+		return openSales;
+	}
+
+	public double getSalesTotal() {
+		return salesTotal;
+	}
+
+	public Date getLastSaleDate() {
+		return lastSaleDate;
+	}
+
+	public void fillWithSalesSummary(CustomerSalesSummaryDTO summary) {
+		numSales = summary.numSales;
+		openSales = summary.openSales;
+		salesTotal = summary.total;
+		lastSaleDate = summary.lastSaleDate;
+	}
 }
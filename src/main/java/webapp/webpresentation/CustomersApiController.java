@@ -0,0 +1,118 @@
+package webapp.webpresentation;
+
+import java.io.IOException;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import webapp.services.AddressDTO;
+import webapp.services.ApplicationException;
+import webapp.services.CustomerDTO;
+import webapp.services.CustomerProfileDTO;
+import webapp.services.CustomerService;
+import webapp.services.CustomersDTO;
+import webapp.services.SaleDTO;
+import webapp.services.SaleDeliveryDTO;
+import webapp.services.SaleService;
+
+/**
+ * The customers of the JSON API:
+ * 
+ * GET  /api/customers?after=&size=       a page of customers, in id order, and the after of the next one
+ * POST /api/customers                    adds a customer (vat, designation, phoneNumber)
+ * GET  /api/customers/{vat}              the customer, its sales summary and its addresses
+ * GET  /api/customers/{vat}/addresses    the customer's addresses
+ * POST /api/customers/{vat}/addresses    adds an address to the customer (address)
+ * GET  /api/customers/{vat}/sales        the customer's sales
+ * POST /api/customers/{vat}/sales        adds an open sale to the customer
+ * GET  /api/customers/{vat}/deliveries   the deliveries of the customer's sales
+ */
+@WebServlet(urlPatterns = "/api/customers/*", asyncSupported = true)
+public class CustomersApiController extends ApiController {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected boolean get(String[] path, HttpServletRequest request, JsonWriter json) throws ApplicationException, IOException {
+		if (path.length == 0) {
+			int size = pageSize(request);
+			CustomersDTO page = CustomerService.INSTANCE.getCustomersPage(intParameter(request, "after", 0), size);
+			json.beginObject().name("customers").beginArray();
+			for (CustomerDTO customer : page.customers)
+				write(json, customer);
+			json.endArray().name("after");
+			if (page.hasMore)
+				json.value(page.customers.get(page.customers.size() - 1).id);
+			else
+				json.nullValue();
+			json.endObject();
+			return true;
+		}
+		int vat = Integer.parseInt(path[0]);
+		if (path.length == 1) {
+			CustomerProfileDTO profile = CustomerService.INSTANCE.getCustomerProfile(vat, false);
+			json.beginObject().name("customer");
+			write(json, profile.customer);
+			json.name("salesSummary");
+			write(json, profile.salesSummary);
+			json.name("addresses").beginArray();
+			for (AddressDTO address : profile.addrs)
+				write(json, address);
+			json.endArray().endObject();
+			return true;
+		}
+		if (path.length > 2)
+			return false;
+		switch (path[1]) {
+		case "addresses":
+			json.beginArray();
+			for (AddressDTO address : CustomerService.INSTANCE.getAllAddresses(vat).addrs)
+				write(json, address);
+			json.endArray();
+			return true;
+		case "sales":
+			json.beginArray();
+			for (SaleDTO sale : SaleService.INSTANCE.getSaleByCustomerVat(vat).sales)
+				write(json, sale);
+			json.endArray();
+			return true;
+		case "deliveries":
+			json.beginArray();
+			for (SaleDeliveryDTO delivery : SaleService.INSTANCE.getSalesDeliveryByVat(vat).sales_delivery)
+				write(json, delivery);
+			json.endArray();
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	protected boolean post(String[] path, HttpServletRequest request, HttpServletResponse response, JsonWriter json)
+			throws ApplicationException, IOException {
+		if (path.length == 0) {
+			CustomerDTO customer = CustomerService.INSTANCE.addCustomer(requiredInt(request, "vat"),
+					required(request, "designation"), requiredInt(request, "phoneNumber"));
+			response.setStatus(HttpServletResponse.SC_CREATED);
+			write(json, customer);
+			return true;
+		}
+		if (path.length != 2)
+			return false;
+		int vat = Integer.parseInt(path[0]);
+		switch (path[1]) {
+		case "addresses":
+			AddressDTO address = CustomerService.INSTANCE.addAddressToCustomer(vat, required(request, "address"));
+			response.setStatus(HttpServletResponse.SC_CREATED);
+			write(json, address);
+			return true;
+		case "sales":
+			SaleDTO sale = SaleService.INSTANCE.addSale(vat);
+			response.setStatus(HttpServletResponse.SC_CREATED);
+			write(json, sale);
+			return true;
+		default:
+			return false;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import webapp.services.CustomerDTO;
+import webapp.services.CustomersDTO;
 
 
 /**
@@ -17,6 +18,18 @@ public class CustomersHelper extends Helper{
 
 	private List<CustomerHelper> customers;
 	
+	private int pageSize;
+	
+	/**
+	 * The id of the last customer shown, when there are more customers after it (0 otherwise)
+	 */
+	private int nextPageAfter;
+	
+	/**
+	 * The id of the first customer shown, when there are more customers before it (0 otherwise)
+	 */
+	private int previousPageBefore;
+	
 	public CustomersHelper() {
 		customers = new ArrayList<>();
 	}
@@ -24,6 +37,60 @@ public class CustomersHelper extends Helper{
 	public List<CustomerHelper> getCustomers() {
 		return customers;
 	}
+	
+	/**
+	 * @return The number of customers shown
+	 */
+	public int getNumberOfCustomers() {
+		return customers.size();
+	}
+	
+	public int getPageSize() {
+		return pageSize;
+	}
+	
+	public int getNextPageAfter() {
+		return nextPageAfter;
+	}
+	
+	public int getPreviousPageBefore() {
+		return previousPageBefore;
+	}
+	
+	/**
+	 * Shows a page of customers reached going forward.
+	 * 
+	 * @param page The customers of the page
+	 * @param pageSize The size of the pages
+	 * @param afterId The id the page starts after (0 for the first page)
+	 */
+	public void fillWithPage(CustomersDTO page, int pageSize, int afterId) {
+		fillWithCustomers(page.customers);
+		this.pageSize = pageSize;
+		nextPageAfter = page.hasMore ? lastId() : 0;
+		previousPageBefore = afterId > 0 ? firstId() : 0;
+	}
+	
+	/**
+	 * Shows a page of customers reached going back (with its customers in id order).
+	 * 
+	 * @param page The customers of the page
+	 * @param pageSize The size of the pages
+	 */
+	public void fillWithPreviousPage(CustomersDTO page, int pageSize) {
+		fillWithCustomers(page.customers);
+		this.pageSize = pageSize;
+		nextPageAfter = lastId();
+		previousPageBefore = page.hasMore ? firstId() : 0;
+	}
+	
+	private int firstId() {
+		return customers.isEmpty() ? 0 : customers.get(0).getId();
+	}
+	
+	private int lastId() {
+		return customers.isEmpty() ? 0 : customers.get(customers.size() - 1).getId();
+	}
 
 	public void fillWithCustomers(List<CustomerDTO> cust) {
 		for(CustomerDTO c : cust) {
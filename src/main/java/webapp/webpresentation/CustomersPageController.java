@@ -0,0 +1,30 @@
+package webapp.webpresentation;
+
+import javax.servlet.http.HttpServletRequest;
+
+import webapp.services.ApplicationException;
+import webapp.services.CustomerService;
+
+/**
+ * Base class of the page controllers that show the customers a page at a time.
+ */
+public abstract class CustomersPageController extends PageController {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Fills the helper with the page of customers the request asks for: the
+	 * one after the customer id in the after parameter, the one before the id
+	 * in the before parameter, or else the first one. No total is counted, so
+	 * a page costs only the range query that reads it.
+	 */
+	protected void fillWithCustomersPage(CustomersHelper csh, HttpServletRequest request) throws ApplicationException {
+		int size = pageSize(request);
+		int before = intParameter(request, "before", 0);
+		if (before > 0) {
+			csh.fillWithPreviousPage(CustomerService.INSTANCE.getCustomersPageBefore(before, size), size);
+		} else {
+			int after = intParameter(request, "after", 0);
+			csh.fillWithPage(CustomerService.INSTANCE.getCustomersPage(after, size), size, after);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package webapp.webpresentation;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.Date;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import webapp.persistence.RowCursor;
+import webapp.persistence.SaleStatus;
+import webapp.services.ApplicationException;
+import webapp.services.SaleDTO;
+import webapp.services.SaleService;
+
+/**
+ * Exports the sales made between two days (the from and to parameters, as
+ * yyyy-mm-dd, both inclusive), optionally only the open (status=O) or closed
+ * (status=C) ones, as CSV or, with format=json, as a JSON array.
+ *
+ * The sales are written to the response as they are read from the database,
+ * so the memory used does not depend on how many sales are exported.
+ */
+@WebServlet(urlPatterns = "/ExportSalesPageController", asyncSupported = true)
+public class ExportSalesPageController extends PageController {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void process(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		String from = request.getParameter("from");
+		String to = request.getParameter("to");
+		String status = request.getParameter("status");
+		boolean json = "json".equalsIgnoreCase(request.getParameter("format"));
+
+		Date fromDate;
+		Date toDate;
+		try {
+			fromDate = Date.valueOf(from);
+			toDate = Date.valueOf(to);
+		} catch (IllegalArgumentException | NullPointerException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid date range (use from and to as yyyy-mm-dd)");
+			return;
+		}
+		SaleStatus saleStatus = null;
+		if (status != null && !status.isEmpty()) {
+			if (!status.equals("O") && !status.equals("C")) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid status (use O or C)");
+				return;
+			}
+			saleStatus = status.equals("O") ? SaleStatus.OPEN : SaleStatus.CLOSED;
+		}
+
+		try (RowCursor<SaleDTO> sales = SaleService.INSTANCE.streamSalesBetween(fromDate, toDate, saleStatus)) {
+			response.setCharacterEncoding("UTF-8");
+			response.setContentType(json ? "application/json" : "text/csv");
+			response.setHeader("Content-Disposition", "attachment; filename=\"sales-" + from + "-" + to
+					+ (json ? ".json\"" : ".csv\""));
+			PrintWriter out = response.getWriter();
+			if (json)
+				writeJson(sales, out);
+			else
+				writeCsv(sales, out);
+			out.flush();
+		} catch (ApplicationException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+		} catch (IllegalStateException e) {
+			// the response is already under way, so it can only be cut short
+			throw new ServletException("Error exporting the sales between " + from + " and " + to, e);
+		}
+	}
+
+	private static void writeCsv(RowCursor<SaleDTO> sales, PrintWriter out) {
+		out.print("id,date,total,status,customer_vat\r\n");
+		while (sales.hasNext()) {
+			SaleDTO sale = sales.next();
+			out.print(sale.id);
+			out.print(',');
+			out.print(sale.data);
+			out.print(',');
+			out.print(sale.total);
+			out.print(',');
+			out.print(sale.statusId);
+			out.print(',');
+			out.print(sale.customerVat);
+			out.print("\r\n");
+		}
+	}
+
+	private static void writeJson(RowCursor<SaleDTO> sales, PrintWriter out) throws IOException {
+		JsonWriter json = new JsonWriter(out).beginArray();
+		while (sales.hasNext())
+			ApiController.write(json, sales.next());
+		json.endArray();
+	}
+}
@@ -7,8 +7,8 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import webapp.services.AddressesDTO;
 import webapp.services.ApplicationException;
+import webapp.services.CustomerProfileDTO;
 import webapp.services.CustomerService;
 
 
@@ -23,7 +23,7 @@ import webapp.services.CustomerService;
  * (Forward information to it)
  * 
  */
-@WebServlet("/GetCustomerPageController")
+@WebServlet(urlPatterns = "/GetCustomerPageController", asyncSupported = true)
 public class GetCustomerPageController extends PageController {
 
 	private static final long serialVersionUID = 1L;
@@ -44,17 +44,20 @@ public class GetCustomerPageController extends PageController {
 			String locality = request.getParameter("locality");
 			if (isInt(ch, vat, "Invalid VAT number") || isInt(ash, vat, "Invalid VAT number")) {
 				int vatNumber = intValue(vat);
-				ch.fillWithCustomer(cs.getCustomerByVat(vatNumber));
+				CustomerProfileDTO profile;
 				if(address != null) {
-					cs.addAddressToCustomer(vatNumber, (address + ";" + door + ";" + postalCode + ";" + locality));
+					profile = cs.addAddressAndGetProfile(vatNumber, (address + ";" + door + ";" + postalCode + ";" + locality));
+				} else {
+					profile = cs.getCustomerProfile(vatNumber, false);
 				}
-				AddressesDTO a = cs.getAllAddresses(vatNumber);
-				ash.fillWithAddresses(a.addrs);
-				request.getRequestDispatcher("CustomerInfo.jsp").forward(request, response);
+				ch.fillWithCustomer(profile.customer);
+				ch.fillWithSalesSummary(profile.salesSummary);
+				ash.fillWithAddresses(profile.addrs);
+				forward(request, response, "CustomerInfo.jsp");
 			}
 		} catch (ApplicationException e) {
 			ch.addMessage("It was not possible to fulfill the request: " + e.getMessage());
-			request.getRequestDispatcher("CustomerError.jsp").forward(request, response); 
+			forward(request, response, "CustomerError.jsp"); 
 		}
 
 	}
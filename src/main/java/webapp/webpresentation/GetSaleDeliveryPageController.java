@@ -12,7 +12,7 @@ import webapp.services.SaleService;
 import webapp.services.SalesDeliveryDTO;
 
 
-@WebServlet("/GetSaleDeliveryPageController")
+@WebServlet(urlPatterns = "/GetSaleDeliveryPageController", asyncSupported = true)
 public class GetSaleDeliveryPageController extends PageController{
 	private static final long serialVersionUID = 1L;
 
@@ -30,11 +30,11 @@ public class GetSaleDeliveryPageController extends PageController{
 				int vatNumber = intValue(vat);
 				SalesDeliveryDTO s = ss.getSalesDeliveryByVat(vatNumber);
 				sdh.fillWithSalesDelivery(s.sales_delivery);
-				request.getRequestDispatcher("ShowSalesDelivery.jsp").forward(request, response);
+				forward(request, response, "ShowSalesDelivery.jsp");
 			}
 		} catch (ApplicationException e) {
 			sdh.addMessage("It was not possible to fulfill the request: " + e.getMessage());
-			request.getRequestDispatcher("CustomerError.jsp").forward(request, response); 
+			forward(request, response, "CustomerError.jsp"); 
 		}
 
 	}
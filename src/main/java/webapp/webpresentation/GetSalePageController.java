@@ -11,7 +11,7 @@ import webapp.services.ApplicationException;
 import webapp.services.SaleService;
 import webapp.services.SalesDTO;
 
-@WebServlet("/GetSalePageController")
+@WebServlet(urlPatterns = "/GetSalePageController", asyncSupported = true)
 public class GetSalePageController extends PageController{
 	private static final long serialVersionUID = 1L;
 	
@@ -28,11 +28,11 @@ public class GetSalePageController extends PageController{
 				int vatNumber = intValue(vat);
 				SalesDTO sdto = ss.getSaleByCustomerVat(vatNumber);
 				sh.fillWithSales(sdto.sales);
-				request.getRequestDispatcher("SalesInfo.jsp").forward(request, response);
+				forward(request, response, "SalesInfo.jsp");
 			}
 		} catch (ApplicationException e) {
 			sh.addMessage("It was not possible to fulfill the request: " + e.getMessage());
-			request.getRequestDispatcher("CustomerError.jsp").forward(request, response); 
+			forward(request, response, "CustomerError.jsp"); 
 		}
 	}
 
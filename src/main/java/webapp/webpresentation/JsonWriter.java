@@ -0,0 +1,153 @@
+package webapp.webpresentation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+
+/**
+ * Writes JSON straight to a character stream, value by value, with no
+ * intermediate tree of objects. The caller is trusted to nest the calls
+ * properly (a name before each value of an object, and every begin closed
+ * by its end); the writer only takes care of separators and escaping.
+ *
+ * Dates are written as strings in their toString() form, which for the
+ * java.sql.Date values of the DTOs is yyyy-mm-dd.
+ */
+class JsonWriter {
+
+	private final Writer out;
+
+	/**
+	 * Whether the next value is the first of its array or object (so no comma
+	 * goes before it)
+	 */
+	private boolean first = true;
+
+	/**
+	 * Whether the next value follows a name (so no comma goes before it either)
+	 */
+	private boolean afterName;
+
+	JsonWriter(Writer out) {
+		this.out = out;
+	}
+
+	JsonWriter beginObject() throws IOException {
+		separate();
+		out.write('{');
+		first = true;
+		return this;
+	}
+
+	JsonWriter endObject() throws IOException {
+		out.write('}');
+		first = false;
+		return this;
+	}
+
+	JsonWriter beginArray() throws IOException {
+		separate();
+		out.write('[');
+		first = true;
+		return this;
+	}
+
+	JsonWriter endArray() throws IOException {
+		out.write(']');
+		first = false;
+		return this;
+	}
+
+	/**
+	 * Writes the name of the next member of the current object
+	 */
+	JsonWriter name(String name) throws IOException {
+		separate();
+		string(name);
+		out.write(':');
+		afterName = true;
+		return this;
+	}
+
+	JsonWriter value(String value) throws IOException {
+		separate();
+		if (value == null)
+			out.write("null");
+		else
+			string(value);
+		first = false;
+		return this;
+	}
+
+	JsonWriter value(long value) throws IOException {
+		separate();
+		out.write(Long.toString(value));
+		first = false;
+		return this;
+	}
+
+	JsonWriter value(double value) throws IOException {
+		separate();
+		out.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+		first = false;
+		return this;
+	}
+
+	JsonWriter value(boolean value) throws IOException {
+		separate();
+		out.write(value ? "true" : "false");
+		first = false;
+		return this;
+	}
+
+	JsonWriter value(Date value) throws IOException {
+		return value(value == null ? null : value.toString());
+	}
+
+	JsonWriter nullValue() throws IOException {
+		return value((String) null);
+	}
+
+	JsonWriter flush() throws IOException {
+		out.flush();
+		return this;
+	}
+
+	private void separate() throws IOException {
+		if (afterName)
+			afterName = false;
+		else if (!first)
+			out.write(',');
+		first = false;
+	}
+
+	private void string(String s) throws IOException {
+		out.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else
+					out.write(c);
+			}
+		}
+		out.write('"');
+	}
+}
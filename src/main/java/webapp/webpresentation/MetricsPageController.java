@@ -0,0 +1,69 @@
+package webapp.webpresentation;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import webapp.metrics.Metrics;
+import webapp.metrics.OperationStats;
+import webapp.persistence.DataSource;
+
+/**
+ * Shows the application's metrics as JSON: the requests of each page
+ * controller and the executions of each SQL statement (counts, errors, rows
+ * and latency percentiles in milliseconds), the load of the request executor
+ * and the statement cache counters. The same statistics are published as
+ * MBeans under the webapp JMX domain.
+ *
+ * It is not asynchronous, so it still answers when the request executor is
+ * saturated.
+ */
+@WebServlet("/metrics")
+public class MetricsPageController extends PageController {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void process(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-store");
+		JsonWriter json = new JsonWriter(response.getWriter()).beginObject();
+		json.name("controllers");
+		write(json, Metrics.INSTANCE.getControllers());
+		json.name("statements");
+		write(json, Metrics.INSTANCE.getStatements());
+		json.name("requestExecutor").beginObject()
+			.name("mode").value(String.valueOf(RequestExecutor.INSTANCE.getMode()))
+			.name("queued").value(RequestExecutor.INSTANCE.getQueuedRequests())
+			.name("active").value(RequestExecutor.INSTANCE.getActiveRequests())
+			.endObject();
+		json.name("statementCache").beginObject()
+			.name("hits").value(DataSource.INSTANCE.getStatementCacheHits())
+			.name("misses").value(DataSource.INSTANCE.getStatementCacheMisses())
+			.name("evictions").value(DataSource.INSTANCE.getStatementCacheEvictions())
+			.endObject();
+		json.endObject().flush();
+	}
+
+	private static void write(JsonWriter json, Map<String, OperationStats> all) throws IOException {
+		json.beginObject();
+		for (Map.Entry<String, OperationStats> e : all.entrySet()) {
+			OperationStats stats = e.getValue();
+			json.name(e.getKey()).beginObject()
+				.name("count").value(stats.getCount())
+				.name("errors").value(stats.getErrors())
+				.name("rows").value(stats.getRows())
+				.name("meanMillis").value(stats.getMeanMillis())
+				.name("p50Millis").value(stats.getP50Millis())
+				.name("p99Millis").value(stats.getP99Millis())
+				.name("p999Millis").value(stats.getP999Millis())
+				.name("maxMillis").value(stats.getMaxMillis())
+				.endObject();
+		}
+		json.endObject();
+	}
+}
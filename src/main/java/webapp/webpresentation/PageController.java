@@ -1,18 +1,40 @@
 package webapp.webpresentation;
 
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import webapp.metrics.Metrics;
+import webapp.metrics.OperationStats;
+import webapp.persistence.DataSource;
+
 /**
  * An abstract Page Controller. 
  *   
  * A Page Controller is an object that handles a request 
  * for a specific page or action on a web site.
  * There is one input controller for each logical page (or action) of the web site.
+ * 
+ * When the request executor is running and the servlet supports it, requests
+ * are processed asynchronously: the container's thread only queues the request
+ * in the executor and goes back to accepting connections, while one of the 
+ * executor's threads (bounded by the size of the connection pool) processes it.
+ * A request that finds the executor's queue full, that waits in it longer
+ * than the executor's timeout, or that times out waiting for a database
+ * connection, is answered with 503 Service Unavailable.
+ * 
+ * Every request is counted, and timed from its arrival to its completion, in
+ * the metrics of its controller (see Metrics.controller). A request fails when
+ * processing it throws or it is answered with a 5xx status.
  *    
  * @author fmartins
  *
@@ -21,6 +43,21 @@ public abstract class PageController extends HttpServlet {
 
 	private static final long serialVersionUID = -7066373204929867189L;
 
+	/**
+	 * The number of rows of a listing page, when the request does not give one
+	 */
+	protected static final int DEFAULT_PAGE_SIZE = 100;
+
+	/**
+	 * The largest number of rows a request may ask for in a listing page
+	 */
+	protected static final int MAX_PAGE_SIZE = 1000;
+
+	/**
+	 * The metrics of this controller (looked up on first use)
+	 */
+	private transient volatile OperationStats stats;
+
 	/**
 	 * @see HttpServlet#doPost(HttpServletRequest request, HttpServletResponse response)
 	 */
@@ -33,7 +70,152 @@ public abstract class PageController extends HttpServlet {
 	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		process(request,response);
+		long start = System.nanoTime();
+		if (request.isAsyncSupported() && RequestExecutor.INSTANCE.isRunning()) {
+			processAsync(request, response, start);
+			return;
+		}
+		boolean failed = true;
+		try {
+			process(request,response);
+			failed = isServerError(response);
+		} finally {
+			// gives the request's database connection back to the pool
+			DataSource.INSTANCE.release();
+			record(start, failed);
+		}
+	}
+
+	/**
+	 * Records a request in the metrics of this controller
+	 */
+	private void record(long start, boolean failed) {
+		if (Metrics.INSTANCE.isEnabled())
+			stats().record(start, failed);
+	}
+
+	private OperationStats stats() {
+		OperationStats s = stats;
+		if (s == null)
+			stats = s = Metrics.INSTANCE.controller(getClass().getSimpleName());
+		return s;
+	}
+
+	private static boolean isServerError(HttpServletResponse response) {
+		return response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+	}
+
+	/**
+	 * Number of seconds a client is told to wait before retrying a request 
+	 * rejected for lack of capacity
+	 */
+	private static final String RETRY_AFTER_SECONDS = "1";
+
+	/**
+	 * The request attribute where forward leaves the page an asynchronous
+	 * request is to be dispatched to
+	 */
+	private static final String DISPATCH_TO = PageController.class.getName() + ".dispatchTo";
+
+	/**
+	 * Queues the request in the request executor, which processes it on one of 
+	 * its threads. Only that thread answers the request (the container does not
+	 * time it out, so nothing else writes to the response meanwhile): with 503
+	 * if it waited in the queue longer than the executor's timeout, or else by
+	 * processing it and then dispatching it to the page it was forwarded to,
+	 * which the container renders, or completing it.
+	 */
+	private void processAsync(HttpServletRequest request, HttpServletResponse response, long start) throws IOException {
+		final AsyncContext async = request.startAsync(request, response);
+		final AtomicBoolean failed = new AtomicBoolean();
+		final long deadline = start + TimeUnit.MILLISECONDS.toNanos(RequestExecutor.INSTANCE.getTimeoutMillis());
+		async.setTimeout(0);
+		async.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				// after the page is rendered
+				record(start, failed.get() || isServerError(response));
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				failed.set(true);
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+		try {
+			RequestExecutor.INSTANCE.execute(() -> {
+				Object page = null;
+				try {
+					if (System.nanoTime() - deadline > 0)
+						unavailable(response, "The request waited too long to be processed");
+					else {
+						process(request, response);
+						if (DataSource.INSTANCE.connectionTimedOut())
+							// the database is saturated, not failing: the client may retry
+							unavailable(response, "The server is busy, please try again");
+						else
+							page = request.getAttribute(DISPATCH_TO);
+					}
+				} catch (ServletException | IOException | RuntimeException e) {
+					failed.set(true);
+					boolean busy = DataSource.INSTANCE.connectionTimedOut();
+					if (!busy)
+						log("Error processing " + request.getRequestURI(), e);
+					if (!response.isCommitted())
+						try {
+							if (busy)
+								unavailable(response, "The server is busy, please try again");
+							else
+								response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+						} catch (IOException | IllegalStateException e1) {
+							// the client is gone
+						}
+				} finally {
+					// the page is rendered without holding a database connection
+					DataSource.INSTANCE.release();
+					if (page != null)
+						async.dispatch(page.toString());
+					else
+						async.complete();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			unavailable(response, "The server is busy, please try again");
+			async.complete();
+		}
+	}
+
+	/**
+	 * Forwards the request to a page (a JSP) that renders the response. When
+	 * the request is processed asynchronously the page is rendered by the
+	 * container once process returns (see AsyncContext.dispatch), rather than
+	 * by the executor's thread. As with a forward, which commits the response,
+	 * only the first page a request is forwarded to is rendered.
+	 */
+	protected void forward(HttpServletRequest request, HttpServletResponse response, String page) throws ServletException, IOException {
+		if (!request.isAsyncStarted())
+			request.getRequestDispatcher(page).forward(request, response);
+		else if (request.getAttribute(DISPATCH_TO) == null)
+			request.setAttribute(DISPATCH_TO, "/" + page);
+	}
+
+	/**
+	 * Answers 503 Service Unavailable, telling the client when to retry,
+	 * unless the response was committed already
+	 */
+	protected static void unavailable(HttpServletResponse response, String message) throws IOException {
+		if (!response.isCommitted()) {
+			response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, message);
+		}
 	}
 
 	/**
@@ -61,6 +243,29 @@ public abstract class PageController extends HttpServlet {
 		}
 	}
 
+	/**
+	 * @return The value of an optional int parameter, or defaultValue when
+	 * it is missing or not a number
+	 */
+	protected int intParameter(HttpServletRequest request, String name, int defaultValue) {
+		String value = request.getParameter(name);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @return The page size asked for in the size parameter, between 1 and MAX_PAGE_SIZE
+	 */
+	protected int pageSize(HttpServletRequest request) {
+		int size = intParameter(request, "size", DEFAULT_PAGE_SIZE);
+		return Math.max(1, Math.min(MAX_PAGE_SIZE, size));
+	}
+
 	protected boolean isFilled (Helper helper, String valor, String mensagem) {
 		if (valor.equals("")) {
 			helper.addMessage(mensagem);
@@ -9,10 +9,9 @@ import javax.servlet.http.HttpServletResponse;
 
 import webapp.services.ApplicationException;
 import webapp.services.CustomerService;
-import webapp.services.CustomersDTO;
 
-@WebServlet("/RemoveCustomerPageController")
-public class RemoveCustomerPageController extends PageController{
+@WebServlet(urlPatterns = "/RemoveCustomerPageController", asyncSupported = true)
+public class RemoveCustomerPageController extends CustomersPageController{
 	private static final long serialVersionUID = 1L;
 
 	@Override
@@ -30,12 +29,11 @@ public class RemoveCustomerPageController extends PageController{
 					cs.removeCustomer(vatNumber);
 				}
 			}	
-			CustomersDTO c = cs.getAllCustomers();
-			csh.fillWithCustomers(c.customers);
-			request.getRequestDispatcher("RemoveCustomer.jsp").forward(request, response);
+			fillWithCustomersPage(csh, request);
+			forward(request, response, "RemoveCustomer.jsp");
 		} catch (ApplicationException e) {
 			//ch.addMessage("It was not possible to fulfill the request: " + e.getMessage());
-			request.getRequestDispatcher("CustomerError.jsp").forward(request, response); 
+			forward(request, response, "CustomerError.jsp"); 
 		}
 	}
 }
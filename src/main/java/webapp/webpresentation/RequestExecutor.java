@@ -0,0 +1,253 @@
+package webapp.webpresentation;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor that runs the requests the page controllers process
+ * asynchronously, off the container's request threads. It runs in one of
+ * two modes:
+ *
+ * POOL (the default) has a fixed number of threads, as many as the
+ * connections of the database pool (each thread holds at most one connection
+ * while it runs a request, so more threads would only wait for connections),
+ * and a bounded queue of requests waiting for a thread.
+ *
+ * VIRTUAL runs each request on a virtual thread of its own, so the work a
+ * request does besides querying the database (reading the request, writing
+ * a large response to a slow client) does not take one of a few threads.
+ * Access to the database is still limited to the size of the connection
+ * pool, by the pool's own semaphore, on which virtual threads wait without
+ * holding a platform thread. So a burst of many more requests than
+ * connections queues on that semaphore, and the requests that wait longer
+ * than the pool's acquire timeout (webapp.db.pool.acquireTimeoutMillis)
+ * are answered with 503 and Retry-After, like the rejected ones. Keep
+ * maxRequests within what the pool serves in that time. Virtual threads
+ * need Java 21; on older JVMs this mode falls back to POOL.
+ *
+ * In both modes the number of requests admitted is bounded: when the queue
+ * (or, for VIRTUAL, the maximum of requests in progress) is full, further
+ * requests are rejected so that the page controllers can answer them with
+ * 503 Service Unavailable instead of piling them up.
+ *
+ * The mode and sizes can be overridden with system properties, e.g.
+ * -Dwebapp.async.mode=virtual -Dwebapp.async.maxRequests=2000
+ */
+public enum RequestExecutor {
+	INSTANCE;
+
+	public enum Mode { POOL, VIRTUAL }
+
+	/**
+	 * The prefix of the system properties read by start
+	 */
+	private static final String PROPERTY_PREFIX = "webapp.async.";
+
+	/**
+	 * Maximum number of requests waiting for a thread, by default
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 100;
+
+	/**
+	 * Maximum number of requests in progress in VIRTUAL mode, by default
+	 */
+	public static final int DEFAULT_MAX_REQUESTS = 1000;
+
+	/**
+	 * How long (in milliseconds) a request may wait for a thread, by default.
+	 * Once running, a request is not cut off (so a long export is not either).
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+	/**
+	 * The executor, or null when not started (and requests are processed
+	 * synchronously)
+	 */
+	private volatile ExecutorService executor;
+
+	/**
+	 * The requests that may still be admitted, in VIRTUAL mode (the queue of
+	 * the POOL executor bounds them otherwise)
+	 */
+	private volatile Semaphore admissions;
+
+	/**
+	 * The number of requests admitted at most, in VIRTUAL mode
+	 */
+	private volatile int maxRequests;
+
+	private volatile Mode mode;
+
+	/**
+	 * How long (in milliseconds) a request may wait for a thread
+	 */
+	private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+	/**
+	 * Starts the executor, in the mode and with the sizes and timeout given by
+	 * the webapp.async.* system properties (if set). Setting
+	 * webapp.async.enabled=false leaves it stopped.
+	 *
+	 * @param threads The number of threads in POOL mode (the size of the connection pool)
+	 */
+	synchronized void start(int threads) {
+		if (!Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "enabled", "true")))
+			return;
+		Mode m = Mode.valueOf(System.getProperty(PROPERTY_PREFIX + "mode", Mode.POOL.name()).toUpperCase());
+		int limit = m == Mode.VIRTUAL
+				? Integer.getInteger(PROPERTY_PREFIX + "maxRequests", DEFAULT_MAX_REQUESTS)
+				: Integer.getInteger(PROPERTY_PREFIX + "queueSize", DEFAULT_QUEUE_SIZE);
+		start(m, threads, limit, Long.getLong(PROPERTY_PREFIX + "timeoutMillis", DEFAULT_TIMEOUT_MILLIS));
+	}
+
+	/**
+	 * Starts the executor, replacing (and shutting down) the running one
+	 *
+	 * @param mode How the requests are run
+	 * @param threads The number of threads in POOL mode
+	 * @param limit In POOL mode, the maximum number of requests waiting for a
+	 * thread; in VIRTUAL mode, the maximum number of requests in progress
+	 * @param timeoutMillis How long (in milliseconds) a request may wait for a thread
+	 * @return The mode actually started (POOL when virtual threads are not available)
+	 */
+	public synchronized Mode start(Mode mode, int threads, int limit, long timeoutMillis) {
+		if (threads < 1 || limit < 1)
+			throw new IllegalArgumentException("Invalid executor size: " + threads + " threads, limit " + limit);
+		shutdown();
+		this.timeoutMillis = timeoutMillis;
+		if (mode == Mode.VIRTUAL) {
+			ExecutorService virtual = newVirtualThreadExecutor();
+			if (virtual != null) {
+				executor = virtual;
+				admissions = new Semaphore(limit);
+				maxRequests = limit;
+				this.mode = Mode.VIRTUAL;
+				return Mode.VIRTUAL;
+			}
+			System.out.println("Virtual threads are not available in this JVM, processing requests on a thread pool.");
+			limit = DEFAULT_QUEUE_SIZE;
+		}
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(limit), new WorkerFactory(), new ThreadPoolExecutor.AbortPolicy());
+		this.mode = Mode.POOL;
+		return Mode.POOL;
+	}
+
+	/**
+	 * Stops the executor. Requests already queued still run.
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+			admissions = null;
+			mode = null;
+		}
+	}
+
+	/**
+	 * @return Whether the executor is running
+	 */
+	boolean isRunning() {
+		return executor != null;
+	}
+
+	/**
+	 * @return The mode of the running executor (null when it is not running)
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * Queues a request to run on one of the executor's threads
+	 *
+	 * @throws RejectedExecutionException When no more requests are admitted
+	 * or the executor is not running
+	 */
+	public void execute(Runnable request) {
+		ExecutorService e = executor;
+		if (e == null)
+			throw new RejectedExecutionException("The request executor is not running");
+		Semaphore a = admissions;
+		if (a == null) {
+			e.execute(request);
+			return;
+		}
+		if (!a.tryAcquire())
+			throw new RejectedExecutionException("Too many requests in progress");
+		try {
+			e.execute(() -> {
+				try {
+					request.run();
+				} finally {
+					a.release();
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			a.release();
+			throw ex;
+		}
+	}
+
+	/**
+	 * @return The number of requests waiting for a thread (always 0 in
+	 * VIRTUAL mode, where every request has a thread)
+	 */
+	int getQueuedRequests() {
+		ExecutorService e = executor;
+		return e instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) e).getQueue().size() : 0;
+	}
+
+	/**
+	 * @return The number of requests being processed
+	 */
+	int getActiveRequests() {
+		ExecutorService e = executor;
+		if (e instanceof ThreadPoolExecutor)
+			return ((ThreadPoolExecutor) e).getActiveCount();
+		Semaphore a = admissions;
+		return a == null ? 0 : maxRequests - a.availablePermits();
+	}
+
+	/**
+	 * @return An executor that starts a virtual thread per task, or null when
+	 * the JVM has no virtual threads (the application is built for Java 8, so
+	 * the factory method is looked up at run time)
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Names the threads (so they can be told apart in thread dumps) and makes
+	 * them daemons, so that they never keep the JVM alive
+	 */
+	private static class WorkerFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "webapp-request-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
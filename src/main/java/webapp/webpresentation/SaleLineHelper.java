@@ -0,0 +1,34 @@
+package webapp.webpresentation;
+
+import webapp.services.SaleLineDTO;
+
+public class SaleLineHelper extends Helper {
+
+	private int id;
+	private String product;
+	private int quantity;
+	private double price;
+
+	public int getId() {
+		return id;
+	}
+
+	public String getProduct() {
+		return product;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public void fillWithSaleLine(SaleLineDTO line) {
+		id = line.id;
+		product = line.product;
+		quantity = line.quantity;
+		price = line.price;
+	}
+}
@@ -0,0 +1,36 @@
+package webapp.webpresentation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import webapp.services.SaleLineDTO;
+import webapp.services.SaleLinesDTO;
+
+public class SaleLinesHelper extends Helper {
+
+	private SaleHelper sale;
+
+	private List<SaleLineHelper> lines;
+
+	public SaleLinesHelper() {
+		lines = new ArrayList<>();
+	}
+
+	public SaleHelper getSale() {
+		return sale;
+	}
+
+	public List<SaleLineHelper> getLines() {
+		return lines;
+	}
+
+	public void fillWithSaleLines(SaleLinesDTO saleLines) {
+		sale = new SaleHelper();
+		sale.fillWithSale(saleLines.sale);
+		for (SaleLineDTO l : saleLines.lines) {
+			SaleLineHelper lh = new SaleLineHelper();
+			lh.fillWithSaleLine(l);
+			lines.add(lh);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package webapp.webpresentation;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import webapp.services.ApplicationException;
+import webapp.services.SaleLinesDTO;
+import webapp.services.SaleService;
+
+/**
+ * Shows the lines of a sale and its total, after adding a line (when the
+ * product, quantity and price parameters are given) or removing one (the
+ * remove_line parameter).
+ */
+@WebServlet(urlPatterns = "/SaleLinesPageController", asyncSupported = true)
+public class SaleLinesPageController extends PageController{
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void process(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		SaleService ss = SaleService.INSTANCE;
+
+		SaleLinesHelper slh = new SaleLinesHelper();
+		request.setAttribute("saleLinesHelper", slh);
+		try{
+			String sale = request.getParameter("sale_id");
+			String product = request.getParameter("product");
+			String quantity = request.getParameter("quantity");
+			String price = request.getParameter("price");
+			String removeLine = request.getParameter("remove_line");
+
+			boolean adding = product != null && quantity != null && price != null;
+			if (!isInt(slh, sale, "Invalid Sale Id")
+					|| adding && !(isFilled(slh, product, "Product is required")
+							&& isInt(slh, quantity, "Invalid quantity") && isDouble(slh, price, "Invalid price"))
+					|| removeLine != null && !isInt(slh, removeLine, "Invalid Sale Line Id")) {
+				forward(request, response, "CustomerError.jsp");
+				return;
+			}
+			int saleId = intValue(sale);
+			if (adding)
+				ss.addSaleLine(saleId, product, intValue(quantity), Double.parseDouble(price));
+			else if (removeLine != null)
+				ss.removeSaleLine(intValue(removeLine));
+			SaleLinesDTO sl = ss.getSaleLines(saleId);
+			slh.fillWithSaleLines(sl);
+			forward(request, response, "SaleLines.jsp");
+		} catch (ApplicationException e) {
+			slh.addMessage("It was not possible to fulfill the request: " + e.getMessage());
+			forward(request, response, "CustomerError.jsp");
+		}
+	}
+
+	private boolean isDouble(Helper help, String num, String mensagem) {
+		try {
+			Double.parseDouble(num);
+			return true;
+		} catch (NumberFormatException e) {
+			help.addMessage(mensagem);
+			return false;
+		}
+	}
+}
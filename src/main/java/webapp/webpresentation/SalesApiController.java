@@ -0,0 +1,91 @@
+package webapp.webpresentation;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import webapp.services.ApplicationException;
+import webapp.services.SaleDTO;
+import webapp.services.SaleDeliveryDTO;
+import webapp.services.SaleLineDTO;
+import webapp.services.SaleLinesDTO;
+import webapp.services.SaleService;
+import webapp.services.SalesDTO;
+
+/**
+ * The sales of the JSON API:
+ * 
+ * GET  /api/sales?before=&size=     a page of sales, newest first, and the before of the next one
+ * GET  /api/sales/{id}              the sale and its lines
+ * POST /api/sales/{id}/lines        adds a line to the open sale (product, quantity, price)
+ * POST /api/sales/{id}/deliveries   adds a delivery of the sale (addr_id)
+ * POST /api/sales/{id}/close        closes the sale
+ */
+@WebServlet(urlPatterns = "/api/sales/*", asyncSupported = true)
+public class SalesApiController extends ApiController {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected boolean get(String[] path, HttpServletRequest request, JsonWriter json) throws ApplicationException, IOException {
+		if (path.length == 0) {
+			int size = pageSize(request);
+			SalesDTO page = SaleService.INSTANCE.getSalesPage(intParameter(request, "before", 0), size);
+			json.beginObject().name("sales").beginArray();
+			for (SaleDTO sale : page.sales)
+				write(json, sale);
+			json.endArray().name("before");
+			if (page.hasMore)
+				json.value(page.sales.get(page.sales.size() - 1).id);
+			else
+				json.nullValue();
+			json.endObject();
+			return true;
+		}
+		if (path.length != 1)
+			return false;
+		SaleLinesDTO sale = SaleService.INSTANCE.getSaleLines(Integer.parseInt(path[0]));
+		json.beginObject().name("sale");
+		write(json, sale.sale);
+		json.name("lines").beginArray();
+		for (SaleLineDTO line : sale.lines)
+			write(json, line);
+		json.endArray().endObject();
+		return true;
+	}
+
+	@Override
+	protected boolean post(String[] path, HttpServletRequest request, HttpServletResponse response, JsonWriter json)
+			throws ApplicationException, IOException {
+		if (path.length != 2)
+			return false;
+		int id = Integer.parseInt(path[0]);
+		switch (path[1]) {
+		case "lines":
+			double price;
+			try {
+				price = Double.parseDouble(required(request, "price"));
+			} catch (NumberFormatException e) {
+				throw new ApplicationException("Invalid price parameter");
+			}
+			SaleLineDTO line = SaleService.INSTANCE.addSaleLine(id, required(request, "product"),
+					requiredInt(request, "quantity"), price);
+			response.setStatus(HttpServletResponse.SC_CREATED);
+			write(json, line);
+			return true;
+		case "deliveries":
+			SaleDeliveryDTO delivery = SaleService.INSTANCE.addSaleDelivery(id, requiredInt(request, "addr_id"));
+			response.setStatus(HttpServletResponse.SC_CREATED);
+			write(json, delivery);
+			return true;
+		case "close":
+			int closed = SaleService.INSTANCE.closeSales(Collections.singletonList(id));
+			json.beginObject().name("closed").value(closed).endObject();
+			return true;
+		default:
+			return false;
+		}
+	}
+}
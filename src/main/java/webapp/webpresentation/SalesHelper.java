@@ -4,10 +4,23 @@ import java.util.ArrayList;
 import java.util.List;
 
 import webapp.services.SaleDTO;
+import webapp.services.SalesDTO;
 
 public class SalesHelper extends Helper{
 
 	private List<SaleHelper> sales;
+	
+	private int pageSize;
+	
+	/**
+	 * The id of the last sale shown, when there are more sales after it (0 otherwise)
+	 */
+	private int nextPageBefore;
+
+	/**
+	 * The number of sales closed by a bulk close (-1 when there was none)
+	 */
+	private int closed = -1;
 
 	public SalesHelper() {
 		sales = new ArrayList<>();
@@ -17,6 +30,34 @@ public class SalesHelper extends Helper{
 		return sales;
 	}
 	
+	public int getPageSize() {
+		return pageSize;
+	}
+	
+	public int getNextPageBefore() {
+		return nextPageBefore;
+	}
+	
+	public int getClosed() {
+		return closed;
+	}
+	
+	public void setClosed(int closed) {
+		this.closed = closed;
+	}
+	
+	/**
+	 * Shows a page of sales.
+	 * 
+	 * @param page The sales of the page
+	 * @param pageSize The size of the pages
+	 */
+	public void fillWithPage(SalesDTO page, int pageSize) {
+		fillWithSales(page.sales);
+		this.pageSize = pageSize;
+		nextPageBefore = page.hasMore ? sales.get(sales.size() - 1).getId() : 0;
+	}
+	
 	public void fillWithSales(List<SaleDTO> sl) {
 		for(SaleDTO s : sl) {
 			SaleHelper sh = new SaleHelper();
@@ -1,5 +1,6 @@
 package webapp.webpresentation;
 
+import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
 
@@ -7,6 +8,9 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
 
+import webapp.CreateDatabase;
+import webapp.metrics.Metrics;
+import webapp.persistence.ConnectionPoolConfig;
 import webapp.persistence.DataSource;
 import webapp.persistence.PersistenceException;
 
@@ -25,8 +29,9 @@ public class Startup implements ServletContextListener {
 		// Connects to the database
 		
 		URL f = getClass().getClassLoader().getResource("/data/hsqldb");
+		ConnectionPoolConfig config = ConnectionPoolConfig.fromSystemProperties();
 		try {
-			DataSource.INSTANCE.connect("jdbc:hsqldb:file:" + f.getPath() + "cssdb", "SA", "");
+			DataSource.INSTANCE.connect("jdbc:hsqldb:file:" + f.getPath() + "cssdb", "SA", "", config);
 		} catch (PersistenceException e) {
 			System.out.println("Error connecting database");
 			System.out.println("Application Message: " + e.getMessage());
@@ -40,14 +45,33 @@ public class Startup implements ServletContextListener {
 			System.out.println("Not able to find the resource.");
 			return;
 		}
+		
+		// Brings the schema up to date
+		try {
+			int applied = CreateDatabase.migrate(DataSource.INSTANCE.getConnection());
+			System.out.println("Applied " + applied + " schema migration(s).");
+		} catch (PersistenceException | SQLException | IOException e) {
+			System.out.println("Error migrating the database schema");
+			System.out.println("Application Message: " + e.getMessage());
+		} finally {
+			DataSource.INSTANCE.release();
+		}
+
+		// Publishes the request and statement metrics through JMX
+		Metrics.INSTANCE.registerMBeans();
+
+		// Processes the requests off the container's threads, one per database connection
+		RequestExecutor.INSTANCE.start(config.maxSize);
 	}
 
 	/**
 	 * @see ServletContextListener#contextDestroyed(ServletContextEvent)
 	 */
 	public void contextDestroyed(ServletContextEvent event)  {
+		RequestExecutor.INSTANCE.shutdown();
+		Metrics.INSTANCE.unregisterMBeans();
 		try {
-			System.out.println("closing HSQLDB connection.");
+			System.out.println("closing HSQLDB connections.");
 			DataSource.INSTANCE.close();
 		} catch (Exception e) {
 			System.out.println("bem tentei, mas...");
@@ -22,7 +22,7 @@ import webapp.services.CustomerService;
  * (Forward information to it)
  * 
  */
-@WebServlet("/UpdateCustomerContactsPageController")
+@WebServlet(urlPatterns = "/UpdateCustomerContactsPageController", asyncSupported = true)
 public class UpdateCustomerContactsPageController extends PageController {
 
 	private static final long serialVersionUID = 1L;
@@ -39,13 +39,12 @@ public class UpdateCustomerContactsPageController extends PageController {
 			if (isInt(ch, vat, "Invalid VAT number") && isInt(ch, phone, "Invalid phone number")) {
 				int vatNumber = intValue(vat);
 				int phoneNumber = intValue(phone);
-				cs.updateCustomerPhone(vatNumber,phoneNumber);
-				ch.fillWithCustomer(cs.getCustomerByVat(vatNumber));
-				request.getRequestDispatcher("CustomerInfo.jsp").forward(request, response);
+				ch.fillWithCustomer(cs.updateCustomerPhone(vatNumber,phoneNumber));
+				forward(request, response, "CustomerInfo.jsp");
 			}
 		} catch (ApplicationException e) {
 			ch.addMessage("It was not possible to fulfill the request: " + e.getMessage());
-			request.getRequestDispatcher("CustomerError.jsp").forward(request, response); 
+			forward(request, response, "CustomerError.jsp"); 
 		}
 	}
 
@@ -1,6 +1,9 @@
 package webapp.webpresentation;
 
 import java.io.IOException;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -11,7 +14,7 @@ import webapp.services.ApplicationException;
 import webapp.services.SaleService;
 import webapp.services.SalesDTO;
 
-@WebServlet("/UpdateSaleStatusPageController")
+@WebServlet(urlPatterns = "/UpdateSaleStatusPageController", asyncSupported = true)
 public class UpdateSaleStatusPageController extends PageController{
 	private static final long serialVersionUID = 1L;
 
@@ -30,12 +33,46 @@ public class UpdateSaleStatusPageController extends PageController{
 					ss.updateSale(idNumber);
 				}
 			}	
-			SalesDTO s = ss.getAllSales();
-			ssh.fillWithSales(s.sales);
-			request.getRequestDispatcher("CloseSale.jsp").forward(request, response);	
+			closeInBulk(request, ss, ssh);
+			int size = pageSize(request);
+			SalesDTO s = ss.getSalesPage(intParameter(request, "before", 0), size);
+			ssh.fillWithPage(s, size);
+			forward(request, response, "CloseSale.jsp");	
 		} catch (ApplicationException e) {
 			//ch.addMessage("It was not possible to fulfill the request: " + e.getMessage());
-			request.getRequestDispatcher("CustomerError.jsp").forward(request, response); 
+			forward(request, response, "CustomerError.jsp"); 
+		}
+	}
+
+	/**
+	 * Closes the sales asked for in the ids (separated by commas or spaces),
+	 * vat, or from and to (yyyy-mm-dd) parameters, whichever is given, and
+	 * shows how many were closed.
+	 */
+	private void closeInBulk(HttpServletRequest request, SaleService ss, SalesHelper ssh) throws ApplicationException {
+		String ids = request.getParameter("ids");
+		String vat = request.getParameter("vat");
+		String from = request.getParameter("from");
+		String to = request.getParameter("to");
+		if (ids != null && !ids.trim().isEmpty()) {
+			List<Integer> idNumbers = new ArrayList<>();
+			for (String saleId : ids.trim().split("[,\\s]+")) {
+				if (!isInt(ssh, saleId, "Invalid sale id: " + saleId))
+					throw new ApplicationException("Invalid sale id: " + saleId);
+				idNumbers.add(intValue(saleId));
+			}
+			ssh.setClosed(ss.closeSales(idNumbers));
+		} else if (vat != null && !vat.trim().isEmpty()) {
+			if (!isInt(ssh, vat, "Invalid VAT number"))
+				throw new ApplicationException("Invalid VAT number: " + vat);
+			ssh.setClosed(ss.closeSalesOfCustomer(intValue(vat)));
+		} else if (from != null && to != null && !from.isEmpty() && !to.isEmpty()) {
+			try {
+				ssh.setClosed(ss.closeSalesBetween(Date.valueOf(from), Date.valueOf(to)));
+			} catch (IllegalArgumentException e) {
+				ssh.addMessage("Invalid date range (use yyyy-mm-dd)");
+				throw new ApplicationException("Invalid date range: " + from + " to " + to);
+			}
 		}
 	}
 }
@@ -1,4 +1,7 @@
 DROP TABLE CUSTOMER if exists
 DROP TABLE SALE if exists
 DROP TABLE ADDRESS if exists
-DROP TABLE SaleDelivery if exists
\ No newline at end of file
+DROP TABLE SaleDelivery if exists
+DROP TABLE SALELINE if exists
+DROP TABLE CUSTOMERSALESSUMMARY if exists
+DROP TABLE SCHEMA_VERSION if exists
\ No newline at end of file
@@ -0,0 +1,4 @@
+CREATE INDEX IF NOT EXISTS IDX_SALE_CUSTOMER_VAT ON SALE (CUSTOMER_VAT)
+CREATE INDEX IF NOT EXISTS IDX_ADDRESS_CUSTOMER_VAT ON ADDRESS (CUSTOMER_VAT)
+CREATE INDEX IF NOT EXISTS IDX_SALEDELIVERY_CUSTOMER_VAT ON SALEDELIVERY (CUSTOMER_VAT)
+CREATE INDEX IF NOT EXISTS IDX_SALEDELIVERY_SALE_ID ON SALEDELIVERY (SALE_ID)
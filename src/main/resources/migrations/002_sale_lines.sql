@@ -0,0 +1,3 @@
+CREATE TABLE IF NOT EXISTS SALELINE (ID INTEGER GENERATED BY DEFAULT AS IDENTITY (START WITH 1) PRIMARY KEY NOT NULL, SALE_ID INTEGER NOT NULL, PRODUCT VARCHAR(100) NOT NULL, QUANTITY INTEGER NOT NULL, PRICE DOUBLE NOT NULL)
+CREATE INDEX IF NOT EXISTS IDX_SALELINE_SALE_ID ON SALELINE (SALE_ID)
+UPDATE SALE SET TOTAL = 0.0 WHERE TOTAL IS NULL
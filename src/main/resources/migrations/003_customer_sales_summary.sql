@@ -0,0 +1,10 @@
+-- One row per customer with sales, kept up to date by the triggers below in the statement that changes SALE
+CREATE TABLE IF NOT EXISTS CUSTOMERSALESSUMMARY (CUSTOMER_VAT INTEGER PRIMARY KEY NOT NULL, NUM_SALES INTEGER DEFAULT 0 NOT NULL, OPEN_SALES INTEGER DEFAULT 0 NOT NULL, CLOSED_SALES INTEGER DEFAULT 0 NOT NULL, TOTAL DOUBLE DEFAULT 0 NOT NULL, LAST_SALE_DATE DATE)
+DROP TRIGGER TRG_SALE_SUMMARY_INSERT IF EXISTS
+CREATE TRIGGER TRG_SALE_SUMMARY_INSERT AFTER INSERT ON SALE REFERENCING NEW ROW AS N FOR EACH ROW MERGE INTO CUSTOMERSALESSUMMARY S USING (VALUES (N.CUSTOMER_VAT, N.DATE, N.TOTAL, N.STATUS)) AS V (VAT, SALE_DATE, SALE_TOTAL, STATUS) ON S.CUSTOMER_VAT = V.VAT WHEN MATCHED THEN UPDATE SET S.NUM_SALES = S.NUM_SALES + 1, S.OPEN_SALES = S.OPEN_SALES + CASE WHEN V.STATUS = 'O' THEN 1 ELSE 0 END, S.CLOSED_SALES = S.CLOSED_SALES + CASE WHEN V.STATUS = 'O' THEN 0 ELSE 1 END, S.TOTAL = S.TOTAL + COALESCE(V.SALE_TOTAL, 0), S.LAST_SALE_DATE = CASE WHEN S.LAST_SALE_DATE IS NULL OR V.SALE_DATE > S.LAST_SALE_DATE THEN V.SALE_DATE ELSE S.LAST_SALE_DATE END WHEN NOT MATCHED THEN INSERT VALUES (V.VAT, 1, CASE WHEN V.STATUS = 'O' THEN 1 ELSE 0 END, CASE WHEN V.STATUS = 'O' THEN 0 ELSE 1 END, COALESCE(V.SALE_TOTAL, 0), V.SALE_DATE)
+DROP TRIGGER TRG_SALE_SUMMARY_UPDATE IF EXISTS
+CREATE TRIGGER TRG_SALE_SUMMARY_UPDATE AFTER UPDATE OF STATUS, TOTAL ON SALE REFERENCING OLD ROW AS O NEW ROW AS N FOR EACH ROW UPDATE CUSTOMERSALESSUMMARY SET OPEN_SALES = OPEN_SALES + CASE WHEN N.STATUS = 'O' THEN 1 ELSE 0 END - CASE WHEN O.STATUS = 'O' THEN 1 ELSE 0 END, CLOSED_SALES = CLOSED_SALES + CASE WHEN N.STATUS = 'O' THEN 0 ELSE 1 END - CASE WHEN O.STATUS = 'O' THEN 0 ELSE 1 END, TOTAL = TOTAL + COALESCE(N.TOTAL, 0) - COALESCE(O.TOTAL, 0) WHERE CUSTOMER_VAT = N.CUSTOMER_VAT
+DROP TRIGGER TRG_SALE_SUMMARY_DELETE IF EXISTS
+CREATE TRIGGER TRG_SALE_SUMMARY_DELETE AFTER DELETE ON SALE REFERENCING OLD ROW AS O FOR EACH ROW UPDATE CUSTOMERSALESSUMMARY SET NUM_SALES = NUM_SALES - 1, OPEN_SALES = OPEN_SALES - CASE WHEN O.STATUS = 'O' THEN 1 ELSE 0 END, CLOSED_SALES = CLOSED_SALES - CASE WHEN O.STATUS = 'O' THEN 0 ELSE 1 END, TOTAL = TOTAL - COALESCE(O.TOTAL, 0), LAST_SALE_DATE = (SELECT MAX(DATE) FROM SALE WHERE CUSTOMER_VAT = O.CUSTOMER_VAT) WHERE CUSTOMER_VAT = O.CUSTOMER_VAT
+-- The sales made before the triggers existed (recomputed in full, so the migration can be run again)
+MERGE INTO CUSTOMERSALESSUMMARY S USING (SELECT CUSTOMER_VAT, COUNT(*), SUM(CASE WHEN STATUS = 'O' THEN 1 ELSE 0 END), SUM(CASE WHEN STATUS = 'O' THEN 0 ELSE 1 END), COALESCE(SUM(TOTAL), 0), MAX(DATE) FROM SALE GROUP BY CUSTOMER_VAT) AS V (VAT, NUM_SALES, OPEN_SALES, CLOSED_SALES, SALES_TOTAL, LAST_SALE_DATE) ON S.CUSTOMER_VAT = V.VAT WHEN MATCHED THEN UPDATE SET S.NUM_SALES = V.NUM_SALES, S.OPEN_SALES = V.OPEN_SALES, S.CLOSED_SALES = V.CLOSED_SALES, S.TOTAL = V.SALES_TOTAL, S.LAST_SALE_DATE = V.LAST_SALE_DATE WHEN NOT MATCHED THEN INSERT VALUES (V.VAT, V.NUM_SALES, V.OPEN_SALES, V.CLOSED_SALES, V.SALES_TOTAL, V.LAST_SALE_DATE)
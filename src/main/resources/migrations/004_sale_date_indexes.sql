@@ -0,0 +1,3 @@
+-- Sales by date range, with or without a status, in date order straight from the index
+CREATE INDEX IF NOT EXISTS IDX_SALE_DATE ON SALE (DATE, ID)
+CREATE INDEX IF NOT EXISTS IDX_SALE_STATUS_DATE ON SALE (STATUS, DATE, ID)
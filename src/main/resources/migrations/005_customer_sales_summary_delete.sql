@@ -0,0 +1,5 @@
+-- Removing a sale only looks for the customer's new last sale date when the removed sale was made on the last one
+DROP TRIGGER TRG_SALE_SUMMARY_DELETE IF EXISTS
+CREATE TRIGGER TRG_SALE_SUMMARY_DELETE AFTER DELETE ON SALE REFERENCING OLD ROW AS O FOR EACH ROW UPDATE CUSTOMERSALESSUMMARY SET NUM_SALES = NUM_SALES - 1, OPEN_SALES = OPEN_SALES - CASE WHEN O.STATUS = 'O' THEN 1 ELSE 0 END, CLOSED_SALES = CLOSED_SALES - CASE WHEN O.STATUS = 'O' THEN 0 ELSE 1 END, TOTAL = TOTAL - COALESCE(O.TOTAL, 0), LAST_SALE_DATE = CASE WHEN O.DATE = LAST_SALE_DATE THEN (SELECT MAX(DATE) FROM SALE WHERE CUSTOMER_VAT = O.CUSTOMER_VAT) ELSE LAST_SALE_DATE END WHERE CUSTOMER_VAT = O.CUSTOMER_VAT
+-- The summaries left behind by customers removed before CustomerService.removeCustomer removed them too
+DELETE FROM CUSTOMERSALESSUMMARY S WHERE NOT EXISTS (SELECT 1 FROM CUSTOMER C WHERE C.VATNUMBER = S.CUSTOMER_VAT) AND NOT EXISTS (SELECT 1 FROM SALE WHERE SALE.CUSTOMER_VAT = S.CUSTOMER_VAT)
@@ -21,11 +21,22 @@
 <P>Please enter sale's id:</P>
     <INPUT  class="w3-btn w3-white w3-border w3-round-large" TYPE="TEXT" NAME="id">
 	<INPUT  class="w3-button w3-black w3-round-large w3-allerta" TYPE="SUBMIT" VALUE="Close Sale" id="botao1" name="submit">
+</FORM>
+<FORM ACTION="UpdateSaleStatusPageController" METHOD="POST" name="close-sales-form">
+<P>Or close all the open sales with these ids (separated by commas), of this customer, or made between these days (yyyy-mm-dd):</P>
+    <INPUT  class="w3-btn w3-white w3-border w3-round-large" TYPE="TEXT" NAME="ids" placeholder="ids">
+    <INPUT  class="w3-btn w3-white w3-border w3-round-large" TYPE="TEXT" NAME="vat" placeholder="VAT number">
+    <INPUT  class="w3-btn w3-white w3-border w3-round-large" TYPE="TEXT" NAME="from" placeholder="from">
+    <INPUT  class="w3-btn w3-white w3-border w3-round-large" TYPE="TEXT" NAME="to" placeholder="to">
+	<INPUT  class="w3-button w3-black w3-round-large w3-allerta" TYPE="SUBMIT" VALUE="Close Sales" id="botao2" name="submit">
                 <br>
                 <br>
                 <br>
                 <br>
 </FORM>
+<c:if test = "${salesHelper.closed >= 0}">
+	<P id="closed-sales">${salesHelper.closed} sales closed</P>
+</c:if>
 <c:if test = "${salesHelper.getSales().size() > 0}">
 	<table class="w3-table w3-bordered" id="sale-list">
 	<tr class="w3-black">
@@ -45,6 +56,9 @@
 		</tr>	
 	</c:forEach>
 </table>
+<c:if test = "${salesHelper.nextPageBefore > 0}">
+	<a class="w3-button w3-black w3-round-large" id="next_page" href="UpdateSaleStatusPageController?before=${salesHelper.nextPageBefore}&amp;size=${salesHelper.pageSize}">Next page</a>
+</c:if>
 </c:if>
         </div>
             <button class="w3-button w3-white w3-round-large w3-allerta" id="botao_home" onclick="window.location.href='index.html'">Home</button>
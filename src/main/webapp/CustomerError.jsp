@@ -8,6 +8,7 @@
 <jsp:useBean id="salesHelper" class="webapp.webpresentation.SalesHelper" scope="request"/>
 <jsp:useBean id="addressesHelper" class="webapp.webpresentation.AddressesHelper" scope="request"/>
 <jsp:useBean id="salesDeliveryHelper" class="webapp.webpresentation.SalesDeliveryHelper" scope="request"/>
+<jsp:useBean id="saleLinesHelper" class="webapp.webpresentation.SaleLinesHelper" scope="request"/>
 <html><head>
 <meta http-equiv="Content-Type" content="text/html; charset=ISO-8859-1">
 <title>Customer Info</title>
@@ -45,5 +46,10 @@
 		<li>${message} 
 	</c:forEach>
 	</ul>
+	<ul>
+	<c:forEach var="message" items="${saleLinesHelper.messages}">
+		<li>${message} 
+	</c:forEach>
+	</ul>
 </body>
 </html>
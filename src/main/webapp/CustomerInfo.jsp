@@ -21,6 +21,7 @@
 <p>Identifier: <c:out value ="${helper.id}"></c:out></p>
 <p>Name: <c:out value ="${helper.designation}"></c:out></p>
 <p>Contact Info: <c:out value ="${helper.phNumber}"></c:out></p>
+<p id="sales-summary">Sales: ${helper.numSales} (${helper.openSales} open), total ${helper.salesTotal}<c:if test = "${helper.lastSaleDate != null}">, last on ${helper.lastSaleDate}</c:if></p>
 </form>
 <br>
 <br>
@@ -18,7 +18,7 @@
 <div class="w3-container w3-blue-grey w3-center w3-allerta" id="body">
     <br>
     <br>
-Number of Clients: <c:out value = "${helper.customers.size()}"></c:out>
+Clients on this page: <c:out value = "${helper.numberOfCustomers}"></c:out>
 <br>
     <br>
     <br>
@@ -38,6 +38,12 @@ Number of Clients: <c:out value = "${helper.customers.size()}"></c:out>
 		
 	</c:forEach>
 </table>
+<c:if test = "${helper.previousPageBefore > 0}">
+	<a class="w3-button w3-black w3-round-large" id="previous_page" href="GetAllCustomersPageController?before=${helper.previousPageBefore}&amp;size=${helper.pageSize}">Previous page</a>
+</c:if>
+<c:if test = "${helper.nextPageAfter > 0}">
+	<a class="w3-button w3-black w3-round-large" id="next_page" href="GetAllCustomersPageController?after=${helper.nextPageAfter}&amp;size=${helper.pageSize}">Next page</a>
+</c:if>
 <button class="w3-button w3-white w3-round-large w3-allerta" id="botao_home" onclick="window.location.href='index.html'">Home</button>
 
 </div>
@@ -24,7 +24,7 @@
         </FORM>
 <br>
 <br>
-<c:if test = "${helpers.customers.size() > 0}">
+<c:if test = "${helpers.numberOfCustomers > 0}">
         <table class="w3-table w3-bordered">
         <tr class="w3-black">
 		<th>Name</th>
@@ -40,6 +40,12 @@
 	</c:forEach>
 </table>
 </c:if>
+<c:if test = "${helpers.previousPageBefore > 0}">
+	<a class="w3-button w3-black w3-round-large" id="previous_page" href="RemoveCustomerPageController?before=${helpers.previousPageBefore}&amp;size=${helpers.pageSize}">Previous page</a>
+</c:if>
+<c:if test = "${helpers.nextPageAfter > 0}">
+	<a class="w3-button w3-black w3-round-large" id="next_page" href="RemoveCustomerPageController?after=${helpers.nextPageAfter}&amp;size=${helpers.pageSize}">Next page</a>
+</c:if>
 <button class="w3-button w3-white w3-round-large w3-allerta" id="botao_home" onclick="window.location.href='index.html'">Home</button>
     </div>
 </BODY>
@@ -0,0 +1,57 @@
+<!DOCTYPE html PUBLIC "-//W3C//DTD HTML 4.01 Transitional//EN" "http://www.w3.org/TR/html4/loose.dtd">
+<%@ page language="java" contentType="text/html; charset=ISO-8859-1"
+    pageEncoding="ISO-8859-1"%>
+<%@taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<jsp:useBean id="saleLinesHelper" class="webapp.webpresentation.SaleLinesHelper" scope="request"/>
+<html>
+<head>
+<meta http-equiv="Content-Type" content="text/html; charset=ISO-8859-1">
+<link rel="stylesheet" type="text/css" href="resources/css.css" />
+<link rel="stylesheet" href="https://fonts.googleapis.com/css?family=Allerta+Stencil">
+<link rel="stylesheet" href="https://www.w3schools.com/w3css/4/w3.css">
+<title>Sale Lines</title>
+</head>
+<body>
+    <div class="w3-container w3-black w3-center w3-allerta" id="titulo">
+    <p>Sale ${saleLinesHelper.sale.id}</p>
+    </div>
+<div class="w3-container w3-blue-grey w3-center w3-allerta" id="body">
+<p id="sale-total">Total: ${saleLinesHelper.sale.total} (${saleLinesHelper.sale.status})</p>
+<c:if test = "${saleLinesHelper.sale.status == 'O'}">
+<FORM ACTION="SaleLinesPageController" METHOD="POST" name="add-sale-line-form">
+    <INPUT TYPE="HIDDEN" NAME="sale_id" VALUE="${saleLinesHelper.sale.id}">
+    <INPUT class="w3-btn w3-white w3-border w3-round-large" TYPE="TEXT" NAME="product" placeholder="product">
+    <INPUT class="w3-btn w3-white w3-border w3-round-large" TYPE="TEXT" NAME="quantity" placeholder="quantity">
+    <INPUT class="w3-btn w3-white w3-border w3-round-large" TYPE="TEXT" NAME="price" placeholder="price">
+    <INPUT class="w3-button w3-black w3-round-large w3-allerta" TYPE="SUBMIT" VALUE="Add Line" id="botao" name="submit">
+</FORM>
+<br>
+</c:if>
+<c:if test = "${saleLinesHelper.lines.size() > 0}">
+    <table class="w3-table w3-bordered" id="sale-line-list">
+	   <tr class="w3-black">
+		<th>Id</th>
+		<th>Product</th>
+		<th>Quantity</th>
+		<th>Price</th>
+		<th></th>
+	</tr>
+	<c:forEach var="line" items="${saleLinesHelper.lines}">
+        <tr class="w3-blue-grey">
+			<td>${line.id}</td>
+			<td>${line.product}</td>
+			<td>${line.quantity}</td>
+			<td>${line.price}</td>
+			<td>
+			<c:if test = "${saleLinesHelper.sale.status == 'O'}">
+				<a class="w3-button w3-black w3-round-large" href="SaleLinesPageController?sale_id=${saleLinesHelper.sale.id}&amp;remove_line=${line.id}">Remove</a>
+			</c:if>
+			</td>
+		</tr>	
+	</c:forEach>
+</table>
+</c:if>
+    <button class="w3-button w3-white w3-round-large w3-allerta" id="botao_home" onclick="window.location.href='index.html'">Home</button>
+    </div>
+</body>
+</html>
@@ -1,7 +1,10 @@
 package vvs_dbsetup;
 
+import java.io.StringReader;
 import java.sql.SQLException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 import static org.junit.Assume.*;
@@ -16,6 +19,9 @@ import com.ninja_squad.dbsetup.operation.Operation;
 
 import static vvs_dbsetup.DBSetupUtils.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import webapp.persistence.CustomerCache;
+import webapp.persistence.CustomerSalesCache;
+import webapp.persistence.DataSource;
 import webapp.persistence.PersistenceException;
 import webapp.services.*;
 
@@ -49,6 +55,9 @@ public class CustomersDBTest {
         // Use the tracker to launch the DbSetup. This will speed-up tests 
 		// that do not not change the BD. Otherwise, just use dbSetup.launch();
         dbSetupTracker.launchIfNecessary(dbSetup);
+        // DbSetup writes behind the gateways' back
+        CustomerCache.INSTANCE.clear();
+        CustomerSalesCache.INSTANCE.clear();
 		
 	}
 	
@@ -97,8 +106,9 @@ public class CustomersDBTest {
 		CustomerDTO cust = CustomerService.INSTANCE.getCustomerByVat(vat);
 		CustomerService.INSTANCE.removeCustomer(vat);
 		assertFalse(CustomerService.INSTANCE.hasClient(vat));
-		CustomerService.INSTANCE.addCustomer(cust.vat, cust.designation, cust.phoneNumber);
+		CustomerDTO added = CustomerService.INSTANCE.addCustomer(cust.vat, cust.designation, cust.phoneNumber);
 		assertTrue(CustomerService.INSTANCE.hasClient(vat));
+		assertEquals(CustomerService.INSTANCE.getCustomerByVat(vat).id, added.id);
 	}
 	
 	private void deleteAllCustomers() throws ApplicationException{
@@ -123,4 +133,201 @@ public class CustomersDBTest {
 		assertEquals("Size should be zero after deletion",
             0, SaleService.INSTANCE.getSaleByCustomerVat(vat).sales.size());
 	}
+
+	/**
+	 * After deleting a customer with sales, its sales summary is removed
+	 * too, so when it is added back it has no sales
+	 */
+	@Test
+	public void removeCustomerRemovesSalesSummaryTest() throws ApplicationException, PersistenceException, SQLException {
+		int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+		CustomerDTO cust = CustomerService.INSTANCE.getCustomerByVat(vat);
+		SaleService.INSTANCE.addSale(vat);
+		assumeTrue(countSalesSummaries(vat) == 1);
+		CustomerService.INSTANCE.removeCustomer(vat);
+		assertEquals(0, countSalesSummaries(vat));
+		CustomerService.INSTANCE.addCustomer(cust.vat, cust.designation, cust.phoneNumber);
+		CustomerSalesSummaryDTO summary = SaleService.INSTANCE.getCustomerSalesSummary(vat);
+		assertEquals(0, summary.numSales);
+		assertNull(summary.lastSaleDate);
+	}
+
+	/**
+	 * A repeated customer lookup is served from the cache
+	 */
+	@Test
+	public void repeatedLookupHitsCacheTest() throws ApplicationException {
+		int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+		CustomerService.INSTANCE.getCustomerByVat(vat);
+		long hits = CustomerCache.INSTANCE.getHits();
+		CustomerService.INSTANCE.getCustomerByVat(vat);
+		assertEquals(hits + 1, CustomerCache.INSTANCE.getHits());
+	}
+	
+	/**
+	 * Updating a cached customer's phone number is seen by the next lookup
+	 */
+	@Test
+	public void updatedPhoneIsNotServedStaleTest() throws ApplicationException {
+		int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+		int phone = CustomerService.INSTANCE.getCustomerByVat(vat).phoneNumber;
+		CustomerService.INSTANCE.updateCustomerPhone(vat, phone + 1);
+		assertEquals(phone + 1, CustomerService.INSTANCE.getCustomerByVat(vat).phoneNumber);
+	}
+	
+	/**
+	 * A customer read (and cached) in the transaction that changes it is
+	 * forgotten when the transaction ends, so a rolled back change is not served
+	 */
+	@Test
+	public void rolledBackPhoneIsNotServedTest() throws ApplicationException, PersistenceException {
+		int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+		int phone = CustomerService.INSTANCE.getCustomerByVat(vat).phoneNumber;
+		DataSource.INSTANCE.beginTransaction();
+		try {
+			CustomerService.INSTANCE.updateCustomerPhone(vat, phone + 1);
+			assertEquals(phone + 1, CustomerService.INSTANCE.getCustomerByVat(vat).phoneNumber);
+		} finally {
+			DataSource.INSTANCE.rollback();
+		}
+		assertEquals(phone, CustomerService.INSTANCE.getCustomerByVat(vat).phoneNumber);
+	}
+
+	/**
+	 * Updating a cached customer's phone number returns the updated customer
+	 * without reading it again
+	 */
+	@Test
+	public void updatePhoneWritesThroughCacheTest() throws ApplicationException {
+		int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+		CustomerService.INSTANCE.getCustomerByVat(vat);
+		long misses = CustomerCache.INSTANCE.getMisses();
+		assertEquals(913456789, CustomerService.INSTANCE.updateCustomerPhone(vat, 913456789).phoneNumber);
+		assertEquals(misses, CustomerCache.INSTANCE.getMisses());
+	}
+	
+	/**
+	 * Updating the phone number of an unknown customer fails
+	 */
+	@Test
+	public void updatePhoneOfUnknownCustomerTest() throws ApplicationException {
+		int vat = 503183504;
+		assumeFalse(CustomerService.INSTANCE.hasClient(vat));
+		assertThrows(ApplicationException.class, 
+				() -> CustomerService.INSTANCE.updateCustomerPhone(vat, 913456789));
+	}
+	
+	/**
+	 * A customer's profile has its addresses and open sales
+	 */
+	@Test
+	public void customerProfileTest() throws ApplicationException {
+		int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+		CustomerService.INSTANCE.addAddressToCustomer(vat, "Campo Grande;1;1749-016;Lisboa");
+		CustomerProfileDTO profile = CustomerService.INSTANCE.getCustomerProfile(vat, true);
+		assertEquals(vat, profile.customer.vat);
+		assertEquals(CustomerService.INSTANCE.getAllAddresses(vat).addrs.size(), profile.addrs.size());
+		assertEquals(SaleService.INSTANCE.getSaleByCustomerVat(vat).sales.stream()
+				.filter(sale -> "O".equals(sale.statusId)).count(), profile.openSales.size());
+		assertEquals(profile.openSales.size(), profile.salesSummary.openSales);
+		assertEquals(SaleService.INSTANCE.getCustomerSalesSummary(vat).numSales, profile.salesSummary.numSales);
+	}
+	
+	/**
+	 * Adding an address to an unknown customer adds nothing
+	 */
+	@Test
+	public void addAddressToUnknownCustomerTest() throws ApplicationException {
+		int vat = 503183504;
+		assumeFalse(CustomerService.INSTANCE.hasClient(vat));
+		assertThrows(ApplicationException.class, 
+				() -> CustomerService.INSTANCE.addAddressAndGetProfile(vat, "Campo Grande;1;1749-016;Lisboa"));
+		assertEquals(0, CustomerService.INSTANCE.getAllAddresses(vat).addrs.size());
+	}
+	
+	/**
+	 * Listing all the customers yields the same customers as paging through them
+	 */
+	@Test
+	public void getAllCustomersTest() throws ApplicationException {
+		List<CustomerDTO> listed = CustomerService.INSTANCE.getAllCustomers().customers;
+		assumeTrue(listed.size() > 0);
+		Set<Integer> paged = new HashSet<>();
+		int afterId = 0;
+		CustomersDTO page;
+		do {
+			page = CustomerService.INSTANCE.getCustomersPage(afterId, 2);
+			for (CustomerDTO customer : page.customers)
+				paged.add(customer.vat);
+			afterId = page.customers.get(page.customers.size() - 1).id;
+		} while (page.hasMore);
+		Set<Integer> all = new HashSet<>();
+		for (CustomerDTO customer : listed)
+			all.add(customer.vat);
+		assertEquals(listed.size(), all.size());
+		assertEquals(paged, all);
+		assertTrue(all.contains(CustomerService.INSTANCE.getFirstCustomerVat()));
+	}
+	
+	/**
+	 * Paging through the customers visits each of them once, in id order
+	 */
+	@Test
+	public void customersPagesTest() throws ApplicationException {
+		List<CustomerDTO> listed = CustomerService.INSTANCE.getAllCustomers().customers;
+		assumeTrue(listed.size() > 1);
+		int afterId = 0;
+		int seen = 0;
+		CustomersDTO page;
+		do {
+			page = CustomerService.INSTANCE.getCustomersPage(afterId, 1);
+			assertEquals(1, page.customers.size());
+			assertTrue("Customers should come in id order", page.customers.get(0).id > afterId);
+			afterId = page.customers.get(0).id;
+			seen++;
+		} while (page.hasMore);
+		assertEquals(listed.size(), seen);
+	}
+
+	/**
+	 * Paging back from the last customer visits the others once, each page in id order
+	 */
+	@Test
+	public void customersPreviousPagesTest() throws ApplicationException {
+		List<CustomerDTO> listed = CustomerService.INSTANCE.getAllCustomers().customers;
+		assumeTrue(listed.size() > 1);
+		int beforeId = listed.get(listed.size() - 1).id;
+		int seen = 0;
+		CustomersDTO page;
+		do {
+			page = CustomerService.INSTANCE.getCustomersPageBefore(beforeId, 2);
+			assertFalse(page.customers.isEmpty());
+			assertTrue("Customers should come in id order",
+					page.customers.size() == 1 || page.customers.get(0).id < page.customers.get(1).id);
+			assertTrue(page.customers.get(page.customers.size() - 1).id < beforeId);
+			beforeId = page.customers.get(0).id;
+			seen += page.customers.size();
+		} while (page.hasMore);
+		assertEquals(listed.size() - 1, seen);
+	}
+
+	/**
+	 * A bulk import adds the valid records and reports the others by line
+	 */
+	@Test
+	public void importCustomersRejectsInvalidRecordsTest() throws ApplicationException {
+		assumeFalse(CustomerService.INSTANCE.hasClient(503183504));
+		String csv = "vat,designation,phone\n"
+				+ "503183504,\"FCUL, Lisboa\",217500000\n"
+				+ "197672337,JOSE FARIA,914276732\n"
+				+ "12345,TOO SHORT,217500000\n"
+				+ "503183504,FCUL,217500000\n";
+		CustomerImportDTO report = CustomerService.INSTANCE.importCustomers(new StringReader(csv), 2);
+		assertEquals(1, report.imported);
+		assertEquals(3, report.rejections.size());
+		assertEquals(3, report.rejections.get(0).line);
+		assertEquals(4, report.rejections.get(1).line);
+		assertEquals(5, report.rejections.get(2).line);
+		assertEquals("FCUL, Lisboa", CustomerService.INSTANCE.getCustomerByVat(503183504).designation);
+	}
 }
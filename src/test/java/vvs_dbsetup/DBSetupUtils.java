@@ -4,11 +4,17 @@ import static com.ninja_squad.dbsetup.Operations.deleteAllFrom;
 import static com.ninja_squad.dbsetup.Operations.insertInto;
 import static com.ninja_squad.dbsetup.Operations.sequenceOf;
 
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.GregorianCalendar;
 
 import com.ninja_squad.dbsetup.operation.Insert;
 import com.ninja_squad.dbsetup.operation.Operation;
 
+import webapp.CreateDatabase;
+import webapp.persistence.DataSource;
 import webapp.persistence.PersistenceException;
 import webapp.services.ApplicationException;
 import webapp.services.CustomerDTO;
@@ -32,10 +38,25 @@ public class DBSetupUtils {
 		}
 		
     	try {
-			webapp.persistence.DataSource.INSTANCE.connect(DB_URL, DB_USERNAME, DB_PASSWORD);
+			DataSource.INSTANCE.connect(DB_URL, DB_USERNAME, DB_PASSWORD);
+			CreateDatabase.migrate(DataSource.INSTANCE.getConnection());
 			appDatabaseAlreadyStarted = true;
-		} catch (PersistenceException e) {
-			throw new Error("Application DataSource could not be started");
+		} catch (PersistenceException | SQLException | IOException e) {
+			throw new Error("Application DataSource could not be started", e);
+		}
+	}
+
+	/**
+	 * @return The number of sales summary rows of a customer (0 or 1)
+	 */
+	public static int countSalesSummaries(int vat) throws PersistenceException, SQLException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(
+				"select count(*) from customersalessummary where customer_vat = ?")) {
+			statement.setInt(1, vat);
+			try (ResultSet rs = statement.executeQuery()) {
+				rs.next();
+				return rs.getInt(1);
+			}
 		}
 	}
 	
@@ -43,7 +64,7 @@ public class DBSetupUtils {
 	// Operations for populating test database
 	
     public static final Operation DELETE_ALL =
-            deleteAllFrom("CUSTOMER", "SALE", "ADDRESS", "SALEDELIVERY");
+            deleteAllFrom("CUSTOMER", "SALE", "ADDRESS", "SALEDELIVERY", "SALELINE", "CUSTOMERSALESSUMMARY");
 
     public static final int NUM_INIT_CUSTOMERS;
     public static final int NUM_INIT_SALES;
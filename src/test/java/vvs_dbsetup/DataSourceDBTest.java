@@ -0,0 +1,144 @@
+package vvs_dbsetup;
+
+import static org.junit.Assert.*;
+import static vvs_dbsetup.DBSetupUtils.*;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.*;
+
+import webapp.metrics.Metrics;
+import webapp.metrics.OperationStats;
+import webapp.persistence.DataSource;
+import webapp.persistence.PersistenceException;
+
+/**
+ * Tests the statement cache, the statement metrics and the slow query log of
+ * the application data source
+ */
+public class DataSourceDBTest {
+
+	private static final String SQL = "select * from customer where vatnumber = ?";
+
+	@BeforeClass
+	public static void setupClass() {
+		startApplicationDatabaseForTesting();
+	}
+
+	/**
+	 * Preparing the same SQL text twice reuses the cached statement
+	 */
+	@Test
+	public void repeatedPrepareHitsCacheTest() throws PersistenceException, SQLException {
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(SQL)) {
+			statement.setInt(1, 197672337);
+			statement.executeQuery().close();
+		}
+		long hits = DataSource.INSTANCE.getStatementCacheHits();
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(SQL)) {
+			statement.setInt(1, 197672337);
+			statement.executeQuery().close();
+		}
+		assertEquals(hits + 1, DataSource.INSTANCE.getStatementCacheHits());
+	}
+
+	/**
+	 * A statement still in use is not handed out again
+	 */
+	@Test
+	public void busyStatementIsNotSharedTest() throws PersistenceException, SQLException {
+		try (PreparedStatement first = DataSource.INSTANCE.prepare(SQL);
+			 PreparedStatement second = DataSource.INSTANCE.prepare(SQL)) {
+			first.setInt(1, 197672337);
+			second.setInt(1, 168027852);
+			assertNotSame(first, second);
+			assertFalse(first.isClosed());
+		}
+	}
+
+	/**
+	 * A closed statement handle cannot be used anymore
+	 */
+	@Test
+	public void closedStatementIsUnusableTest() throws PersistenceException, SQLException {
+		PreparedStatement statement = DataSource.INSTANCE.prepare(SQL);
+		statement.close();
+		assertTrue(statement.isClosed());
+		try {
+			statement.setInt(1, 197672337);
+			fail("A closed statement should not accept parameters");
+		} catch (SQLException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Executing a statement is timed, and the rows its caller read counted, in
+	 * the metrics of its SQL text
+	 */
+	@Test
+	public void executionIsRecordedTest() throws PersistenceException, SQLException {
+		String sql = "select count(*) from customer";
+		OperationStats stats = Metrics.INSTANCE.statement(sql);
+		long count = stats.getCount();
+		long rows = stats.getRows();
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(sql);
+			 ResultSet rs = statement.executeQuery()) {
+			while (rs.next())
+				rs.getInt(1);
+			DataSource.INSTANCE.rowsRead(statement, 1);
+		}
+		assertEquals(count + 1, stats.getCount());
+		assertEquals(rows + 1, stats.getRows());
+		assertEquals(0, stats.getErrors());
+		assertTrue(stats.getMaxMillis() >= stats.getP50Millis());
+	}
+
+	/**
+	 * A statement over the slow query threshold is logged with its parameters and caller
+	 */
+	@Test
+	public void slowStatementIsLoggedTest() throws PersistenceException, SQLException {
+		List<String> logged = new ArrayList<>();
+		Handler handler = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				logged.add(record.getMessage());
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		Logger log = Logger.getLogger("webapp.persistence.slowquery");
+		log.addHandler(handler);
+		long threshold = DataSource.INSTANCE.getSlowQueryThreshold();
+		DataSource.INSTANCE.setSlowQueryThreshold(0);
+		try (PreparedStatement statement = DataSource.INSTANCE.prepare(SQL)) {
+			statement.setInt(1, 197672337);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next())
+					rs.getInt("vatnumber");
+			}
+		} finally {
+			DataSource.INSTANCE.setSlowQueryThreshold(threshold);
+			log.removeHandler(handler);
+		}
+		assertEquals(1, logged.size());
+		String message = logged.get(0);
+		assertTrue(message, message.contains(SQL));
+		assertTrue(message, message.contains("[1=197672337]"));
+		assertTrue(message, message.contains("DataSourceDBTest.slowStatementIsLoggedTest"));
+	}
+}
@@ -5,6 +5,7 @@ import java.util.List;
 
 import static org.junit.Assert.*;
 import static org.junit.Assume.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.*;
 
 import com.ninja_squad.dbsetup.DbSetup;
@@ -15,6 +16,8 @@ import com.ninja_squad.dbsetup.destination.DriverManagerDestination;
 import com.ninja_squad.dbsetup.operation.Operation;
 
 import static vvs_dbsetup.DBSetupUtils.*;
+import webapp.persistence.CustomerCache;
+import webapp.persistence.CustomerSalesCache;
 import webapp.services.*;
 
 /**
@@ -48,6 +51,9 @@ public class DeliveryDBTest {
         // Use the tracker to launch the DbSetup. This will speed-up tests 
 		// that do not not change the BD. Otherwise, just use dbSetup.launch();
         dbSetupTracker.launchIfNecessary(dbSetup);
+        // DbSetup writes behind the gateways' back
+        CustomerCache.INSTANCE.clear();
+        CustomerSalesCache.INSTANCE.clear();
 	}
     
     private boolean hasDelivery(int vat, int deliveryId) throws ApplicationException {
@@ -70,6 +76,19 @@ public class DeliveryDBTest {
         assertTrue(hasDelivery(197672337, 1));
     }
     
+    /**
+     * Removing a customer also removes its addresses and deliveries
+     */
+    @Test
+    public void removeCustomerRemovesDeliveriesTest() throws ApplicationException {
+    	int vat = 197672337;
+    	assumeTrue(SaleService.INSTANCE.getSalesDeliveryByVat(vat).sales_delivery.size() > 0);
+    	CustomerService.INSTANCE.removeCustomer(vat);
+    	assertEquals(0, SaleService.INSTANCE.getSalesDeliveryByVat(vat).sales_delivery.size());
+    	assertEquals(0, CustomerService.INSTANCE.getAllAddresses(vat).addrs.size());
+    	assertEquals(0, SaleService.INSTANCE.getSaleByCustomerVat(vat).sales.size());
+    }
+    
     @Test
     public void addDeliverySizeTest() throws ApplicationException {
     	
@@ -82,4 +101,23 @@ public class DeliveryDBTest {
 		
 		assertEquals(NUM_INIT_DELIVERIES + 1, size);
     }
+    
+    /**
+     * A new delivery comes back with its generated id and its sale's customer
+     */
+    @Test
+    public void addDeliveryReturnsItTest() throws ApplicationException {
+    	SaleDeliveryDTO delivery = SaleService.INSTANCE.addSaleDelivery(1, 1);
+    	assertEquals(1, delivery.sale_id);
+    	assertEquals(197672337, delivery.customer_vat);
+    	assertTrue(hasDelivery(delivery.customer_vat, delivery.id));
+    }
+    
+    @Test
+    public void addDeliveryOfUnknownSaleTest() throws ApplicationException {
+    	int id = 20;
+    	assumeFalse(SaleService.INSTANCE.hasSale(id));
+    	assertThrows(ApplicationException.class, () -> 
+			SaleService.INSTANCE.addSaleDelivery(id, 1));
+    }
 }
@@ -1,6 +1,10 @@
 package vvs_dbsetup;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -14,6 +18,11 @@ import com.ninja_squad.dbsetup.destination.DriverManagerDestination;
 import com.ninja_squad.dbsetup.operation.Operation;
 
 import static vvs_dbsetup.DBSetupUtils.*;
+import webapp.persistence.CustomerCache;
+import webapp.persistence.CustomerSalesCache;
+import webapp.persistence.PersistenceException;
+import webapp.persistence.RowCursor;
+import webapp.persistence.SaleStatus;
 import webapp.services.*;
 
 import static org.junit.Assume.*;
@@ -50,6 +59,9 @@ public class SaleDBTest {
         // Use the tracker to launch the DbSetup. This will speed-up tests 
 		// that do not not change the BD. Otherwise, just use dbSetup.launch();
         dbSetupTracker.launchIfNecessary(dbSetup);
+        // DbSetup writes behind the gateways' back
+        CustomerCache.INSTANCE.clear();
+        CustomerSalesCache.INSTANCE.clear();
 	}
     
     @Test
@@ -60,6 +72,12 @@ public class SaleDBTest {
 			SaleService.INSTANCE.updateSale(id));
     }
     
+    @Test
+    public void hasExistingSaleTest() throws ApplicationException {
+    	for (SaleDTO sale : SaleService.INSTANCE.getAllSales().sales)
+    		assertTrue(SaleService.INSTANCE.hasSale(sale.id));
+    }
+    
     @Test
     public void addSaleToCustomerTest() throws ApplicationException {
     	int vat = CustomerService.INSTANCE.getFirstCustomerVat();
@@ -86,4 +104,212 @@ public class SaleDBTest {
 		
 		assertEquals(NUM_INIT_SALES + 1, size);
     }
+    
+    /**
+     * Paging through the sales visits each of them once, newest first
+     */
+    @Test
+    public void salesPagesTest() throws ApplicationException {
+    	int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+    	SaleService.INSTANCE.addSale(vat);
+    	SaleService.INSTANCE.addSale(vat);
+    	
+    	List<Integer> seen = new ArrayList<>();
+    	int beforeId = 0;
+    	SalesDTO page;
+    	do {
+    		page = SaleService.INSTANCE.getSalesPage(beforeId, 2);
+    		assertTrue(page.sales.size() <= 2);
+    		for (SaleDTO sale : page.sales)
+    			seen.add(sale.id);
+    		beforeId = seen.get(seen.size() - 1);
+    	} while (page.hasMore);
+    	assertEquals(NUM_INIT_SALES + 2, seen.size());
+    	for (int i = 1; i < seen.size(); i++)
+    		assertTrue("Sales should come newest first", seen.get(i - 1) > seen.get(i));
+    }
+    
+    /**
+     * A new sale comes back with its generated id and is listed with its
+     * customer's sales straight from the cache
+     */
+    @Test
+    public void addedSaleIsListedFromCacheTest() throws ApplicationException {
+    	int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+    	int init = SaleService.INSTANCE.getSaleByCustomerVat(vat).sales.size();
+    	long misses = CustomerSalesCache.INSTANCE.getMisses();
+    	
+    	SaleDTO sale = SaleService.INSTANCE.addSale(vat);
+    	assertTrue(SaleService.INSTANCE.hasSale(sale.id));
+    	
+    	List<SaleDTO> sales = SaleService.INSTANCE.getSaleByCustomerVat(vat).sales;
+    	assertEquals(init + 1, sales.size());
+    	assertEquals(sale.id, sales.get(sales.size() - 1).id);
+    	assertEquals(misses, CustomerSalesCache.INSTANCE.getMisses());
+    }
+    
+    /**
+     * Closing sales in bulk closes the open ones only and counts them
+     */
+    @Test
+    public void closeSalesTest() throws ApplicationException {
+    	int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+    	SaleDTO first = SaleService.INSTANCE.addSale(vat);
+    	SaleDTO second = SaleService.INSTANCE.addSale(vat);
+    	SaleService.INSTANCE.updateSale(second.id);
+    	
+    	assertEquals(1, SaleService.INSTANCE.closeSales(Arrays.asList(first.id, second.id, 9999)));
+    	for (SaleDTO sale : SaleService.INSTANCE.getSaleByCustomerVat(vat).sales)
+    		if (sale.id == first.id)
+    			assertEquals("C", sale.statusId);
+    }
+    
+    @Test
+    public void closeSalesOfCustomerTest() throws ApplicationException {
+    	int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+    	SaleService.INSTANCE.addSale(vat);
+    	int open = 0;
+    	for (SaleDTO sale : SaleService.INSTANCE.getSaleByCustomerVat(vat).sales)
+    		if (sale.statusId.equals("O"))
+    			open++;
+    	
+    	assertEquals(open, SaleService.INSTANCE.closeSalesOfCustomer(vat));
+    	for (SaleDTO sale : SaleService.INSTANCE.getSaleByCustomerVat(vat).sales)
+    		assertEquals("C", sale.statusId);
+    	assertEquals(0, SaleService.INSTANCE.closeSalesOfCustomer(vat));
+    }
+    
+    @Test
+    public void closeSalesBetweenTest() throws ApplicationException {
+    	Date from = new GregorianCalendar(2018, 0, 1).getTime();
+    	Date to = new GregorianCalendar(2018, 11, 31).getTime();
+    	int open = 0;
+    	for (SaleDTO sale : SaleService.INSTANCE.getAllSales().sales)
+    		if (sale.statusId.equals("O") && !sale.data.before(from) && !sale.data.after(to))
+    			open++;
+    	assumeTrue(open > 0);
+    	
+    	assertEquals(open, SaleService.INSTANCE.closeSalesBetween(from, to));
+    	assertThrows(ApplicationException.class, () -> 
+			SaleService.INSTANCE.closeSalesBetween(to, from));
+    }
+    
+    /**
+     * Adding and removing lines keeps the sale's total up to date
+     */
+    @Test
+    public void saleLinesUpdateTotalTest() throws ApplicationException {
+    	int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+    	SaleDTO sale = SaleService.INSTANCE.addSale(vat);
+    	
+    	SaleService.INSTANCE.addSaleLine(sale.id, "pencil", 3, 0.5);
+    	SaleLineDTO book = SaleService.INSTANCE.addSaleLine(sale.id, "book", 1, 12.0);
+    	SaleLinesDTO lines = SaleService.INSTANCE.getSaleLines(sale.id);
+    	assertEquals(2, lines.lines.size());
+    	assertEquals(13.5, lines.sale.total, 1e-9);
+    	
+    	SaleService.INSTANCE.removeSaleLine(book.id);
+    	assertEquals(1.5, SaleService.INSTANCE.getSaleLines(sale.id).sale.total, 1e-9);
+    	for (SaleDTO s : SaleService.INSTANCE.getSaleByCustomerVat(vat).sales)
+    		if (s.id == sale.id)
+    			assertEquals(1.5, s.total, 1e-9);
+    }
+    
+    /**
+     * Lines cannot be added to a closed sale, and a failed add changes nothing
+     */
+    @Test
+    public void addLineToClosedSaleTest() throws ApplicationException {
+    	int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+    	SaleDTO sale = SaleService.INSTANCE.addSale(vat);
+    	SaleService.INSTANCE.updateSale(sale.id);
+    	
+    	assertThrows(ApplicationException.class, () -> 
+			SaleService.INSTANCE.addSaleLine(sale.id, "pencil", 3, 0.5));
+    	SaleLinesDTO lines = SaleService.INSTANCE.getSaleLines(sale.id);
+    	assertEquals(0, lines.lines.size());
+    	assertEquals(0.0, lines.sale.total, 1e-9);
+    }
+    
+    /**
+     * The sales summary of a customer follows its sales as they are added,
+     * closed, given lines and removed
+     */
+    @Test
+    public void customerSalesSummaryTest() throws ApplicationException {
+    	int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+    	List<SaleDTO> sales = SaleService.INSTANCE.getSaleByCustomerVat(vat).sales;
+    	CustomerSalesSummaryDTO before = SaleService.INSTANCE.getCustomerSalesSummary(vat);
+    	assertEquals(sales.size(), before.numSales);
+    	
+    	SaleDTO sale = SaleService.INSTANCE.addSale(vat);
+    	SaleService.INSTANCE.addSaleLine(sale.id, "book", 2, 10.0);
+    	SaleService.INSTANCE.updateSale(sale.id);
+    	CustomerSalesSummaryDTO after = SaleService.INSTANCE.getCustomerSalesSummary(vat);
+    	assertEquals(before.numSales + 1, after.numSales);
+    	assertEquals(before.openSales, after.openSales);
+    	assertEquals(before.closedSales + 1, after.closedSales);
+    	assertEquals(before.total + 20.0, after.total, 1e-9);
+    	assertEquals(sale.data.toString(), after.lastSaleDate.toString());
+    	
+    	SaleService.INSTANCE.removeSalesByVAT(vat);
+    	CustomerSalesSummaryDTO removed = SaleService.INSTANCE.getCustomerSalesSummary(vat);
+    	assertEquals(0, removed.numSales);
+    	assertEquals(0.0, removed.total, 1e-9);
+    	assertNull(removed.lastSaleDate);
+    }
+    
+    /**
+     * Removing the sales of a customer removes their summary row too, and
+     * the next sale of the customer starts a new one
+     */
+    @Test
+    public void removeSalesRemovesSalesSummaryTest() throws ApplicationException, PersistenceException, SQLException {
+    	int vat = CustomerService.INSTANCE.getFirstCustomerVat();
+    	SaleService.INSTANCE.addSale(vat);
+    	assumeTrue(countSalesSummaries(vat) == 1);
+    	
+    	SaleService.INSTANCE.removeSalesByVAT(vat);
+    	assertEquals(0, countSalesSummaries(vat));
+    	
+    	SaleService.INSTANCE.addSale(vat);
+    	assertEquals(1, countSalesSummaries(vat));
+    	CustomerSalesSummaryDTO summary = SaleService.INSTANCE.getCustomerSalesSummary(vat);
+    	assertEquals(1, summary.numSales);
+    	assertEquals(1, summary.openSales);
+    }
+    
+    /**
+     * Streaming the sales of a date range yields the sales of that range
+     * only, in date order, optionally of one status
+     */
+    @Test
+    public void salesBetweenTest() throws ApplicationException {
+    	Date from = new GregorianCalendar(2018, 0, 1).getTime();
+    	Date to = new GregorianCalendar(2018, 11, 31).getTime();
+    	List<Integer> expected = new ArrayList<>();
+    	for (SaleDTO sale : SaleService.INSTANCE.getAllSales().sales)
+    		if (!sale.data.before(from) && !sale.data.after(to))
+    			expected.add(sale.id);
+    	assumeTrue(expected.size() > 0);
+    	
+    	List<Integer> streamed = new ArrayList<>();
+    	Date previous = from;
+    	try (RowCursor<SaleDTO> sales = SaleService.INSTANCE.streamSalesBetween(from, to, null)) {
+    		while (sales.hasNext()) {
+    			SaleDTO sale = sales.next();
+    			assertFalse("Sales should come in date order", sale.data.before(previous));
+    			previous = sale.data;
+    			streamed.add(sale.id);
+    		}
+    	}
+    	expected.sort(null);
+    	streamed.sort(null);
+    	assertEquals(expected, streamed);
+    	
+    	SaleService.INSTANCE.closeSalesBetween(from, to);
+    	try (RowCursor<SaleDTO> sales = SaleService.INSTANCE.streamSalesBetween(from, to, SaleStatus.OPEN)) {
+    		assertFalse(sales.hasNext());
+    	}
+    }
 }
@@ -0,0 +1,68 @@
+package vvs_htmlunit;
+
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonApiTest {
+
+    private static final String API_URL = NewSaleTest.APPLICATION_URL + "api/";
+
+    private static final String CUSTOMER_VAT = "503183504";
+
+    private static WebResponse request(HttpMethod method, String path, List<NameValuePair> params) throws IOException {
+        try (final WebClient webClient = new WebClient()) {
+            WebRequest request = new WebRequest(new URL(API_URL + path), method);
+            request.setRequestParameters(params);
+            return webClient.loadWebResponse(request);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        List<NameValuePair> params = Collections.singletonList(new NameValuePair("vat", CUSTOMER_VAT));
+        WebappUtils.getPage(new URL(NewSaleTest.APPLICATION_URL + "RemoveCustomerPageController"), params);
+    }
+
+    /**
+     * A customer and a sale added through the API are read back as JSON
+     */
+    @Test
+    public void addCustomerAndSaleTest() throws IOException {
+        WebResponse added = request(HttpMethod.POST, "customers", Arrays.asList(
+                new NameValuePair("vat", CUSTOMER_VAT),
+                new NameValuePair("designation", "FCUL"),
+                new NameValuePair("phoneNumber", "217500000")));
+        assertEquals(201, added.getStatusCode());
+        assertEquals("application/json", added.getContentType());
+        assertTrue(added.getContentAsString().contains("\"vat\":" + CUSTOMER_VAT));
+
+        WebResponse sale = request(HttpMethod.POST, "customers/" + CUSTOMER_VAT + "/sales", Collections.emptyList());
+        assertEquals(201, sale.getStatusCode());
+        assertTrue(sale.getContentAsString().contains("\"status\":\"O\""));
+
+        WebResponse profile = request(HttpMethod.GET, "customers/" + CUSTOMER_VAT, Collections.emptyList());
+        assertEquals(200, profile.getStatusCode());
+        assertTrue(profile.getContentAsString().contains("\"openSales\":1"));
+    }
+
+    @Test
+    public void unknownCustomerTest() throws IOException {
+        WebResponse response = request(HttpMethod.GET, "customers/123456789", Collections.emptyList());
+        assertEquals(404, response.getStatusCode());
+        assertTrue(response.getContentAsString().startsWith("{\"error\":"));
+    }
+}
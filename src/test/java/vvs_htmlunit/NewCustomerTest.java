@@ -4,7 +4,6 @@ import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.NicelyResynchronizingAjaxController;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
-import com.gargoylesoftware.htmlunit.html.HtmlTable;
 import com.gargoylesoftware.htmlunit.html.HtmlTableRow;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -60,9 +59,8 @@ public class NewCustomerTest {
         // removeCustomer(VALID_VATS[1]);
         // removeCustomer(VALID_VATS[2]);
 
-        // get all customers
-        HtmlPage allCustomersPage = (HtmlPage) page.getAnchorByHref("GetAllCustomersPageController").openLinkInNewWindow();
-        final HtmlTable initialCustomers = allCustomersPage.getHtmlElementById("clients");
+        // get all customers (the list is paged, so the new ones need not be on its first page)
+        final List<HtmlTableRow> initialCustomers = WebappUtils.getAllCustomerRows();
 
         String CUSTOMER_0_NAME = "John Snow";
         String CUSTOMER_1_NAME = "John Brown";
@@ -72,12 +70,11 @@ public class NewCustomerTest {
         WebappUtils.addCustomer(VALID_VATS[2], CUSTOMER_2_NAME, CUSTOMER_PHONE, page);
 
         // get all customers again
-        HtmlPage updatedAllCustomersPage = (HtmlPage) page.getAnchorByHref("GetAllCustomersPageController").openLinkInNewWindow();
-        final HtmlTable updatedCustomers = updatedAllCustomersPage.getHtmlElementById("clients");
+        final List<HtmlTableRow> updatedCustomers = WebappUtils.getAllCustomerRows();
 
-        assertEquals(3 + initialCustomers.getRowCount(), updatedCustomers.getRowCount());
+        assertEquals(3 + initialCustomers.size(), updatedCustomers.size());
         List<Integer> foundCustomers = new ArrayList<>();
-        for (HtmlTableRow customerRow : updatedCustomers.getRows()) {
+        for (HtmlTableRow customerRow : updatedCustomers) {
             checkCustomerRow(0, CUSTOMER_0_NAME, CUSTOMER_PHONE, customerRow, foundCustomers);
             checkCustomerRow(1, CUSTOMER_1_NAME, CUSTOMER_PHONE, customerRow, foundCustomers);
             checkCustomerRow(2, CUSTOMER_2_NAME, CUSTOMER_PHONE, customerRow, foundCustomers);
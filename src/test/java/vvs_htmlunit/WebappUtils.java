@@ -42,6 +42,27 @@ public class WebappUtils {
         return getPage(new URL(NewAddressTest.APPLICATION_URL + "GetSalePageController"), params);
     }
 
+    /**
+     * The rows of all the customers, following the pages of the List All Customers use case
+     */
+    public static List<HtmlTableRow> getAllCustomerRows() throws IOException {
+        List<HtmlTableRow> rows = new ArrayList<>();
+        HtmlPage customersPage = getPage(new URL(NewAddressTest.APPLICATION_URL + "GetAllCustomersPageController"),
+                new ArrayList<>());
+        while (true) {
+            HtmlTable customers = customersPage.getHtmlElementById("clients");
+            // ignore the title row
+            for (int i = 1; i < customers.getRowCount(); i++) {
+                rows.add(customers.getRow(i));
+            }
+            List<DomElement> next = customersPage.getElementsById("next_page");
+            if (next.isEmpty()) {
+                return rows;
+            }
+            customersPage = ((HtmlAnchor) next.get(0)).click();
+        }
+    }
+
     public static List<String> getExistingSaleIds(String vat) throws IOException {
         HtmlPage customerSalePage = WebappUtils.getCustomerSalePage(vat);
         List<String> existingSales = new ArrayList<>();
@@ -152,4 +173,24 @@ public class WebappUtils {
         // submit form
         return addSaleForm.getInputByName("submit").click();
     }
+
+    public static HtmlPage closeSale(String saleId, HtmlPage page) throws IOException {
+        HtmlPage saleStatusPage = (HtmlPage) page.getAnchorByHref("UpdateSaleStatusPageController").openLinkInNewWindow();
+        HtmlForm closeSaleForm = saleStatusPage.getFormByName("close-sale-form");
+        closeSaleForm.getInputByName("id").setValueAttribute(saleId);
+        return closeSaleForm.getInputByName("submit").click();
+    }
+
+    public static HtmlPage addSaleDelivery(String vat, String saleId, HtmlPage page) throws IOException {
+        List<NameValuePair> params = new ArrayList<>();
+        params.add(new NameValuePair("vat", vat));
+        HtmlPage addSaleDeliveryPage =
+            getPage(new URL(NewAddressTest.APPLICATION_URL + "AddSaleDeliveryPageController"), params);
+        // deliver to the customer's first address
+        String addressId = addSaleDeliveryPage.<HtmlTable>getHtmlElementById("address-list").getRow(1).getCell(0).asText();
+        HtmlForm deliveryForm = addSaleDeliveryPage.getFormByName("add-sale-delivery-form");
+        deliveryForm.getInputByName("addr_id").setValueAttribute(addressId);
+        deliveryForm.getInputByName("sale_id").setValueAttribute(saleId);
+        return deliveryForm.getInputByName("submit").click();
+    }
 }